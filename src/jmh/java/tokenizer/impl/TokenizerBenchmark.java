@@ -0,0 +1,210 @@
+package tokenizer.impl;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+import tokenizer.iface.ITokenizer;
+
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.StringTokenizer;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**Throughput of Tokenizer and SimpleTok over several input shapes, against JDK baselines.
+ * Every benchmark tokenizes the same lines (about 1 MB of text per op) and sinks every token.
+ * Baselines split on the same delimiters but know nothing of skip areas or escapes,
+ * so on 'nested' and 'escapes' they do less work and give different tokens.
+ * The 'multi' shape holds the "::", "->" and "\r\n" delimiters that multiCharDelimiters splits on.
+ * Run with: ./gradlew jmh  (the gc profiler adds allocation per op)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class TokenizerBenchmark {
+    private static final int TOTAL = 1 << 20;
+
+    @Param({"short", "long", "nested", "escapes", "delimiters", "multi"})
+    public String shape;
+
+    private String[] lines;
+    private ITokenizer tokenizer;
+    private ITokenizer simpleTok;
+    private Pattern pattern;
+    private ITokenizer multiTokenizer;
+    private ITokenizer commaTokenizer;
+    private Pattern multiPattern;
+
+    /*====Input shapes================================================================================================*/
+
+    private static String shortLine(Random random){
+        return "cmd" + random.nextInt(100) + " arg" + random.nextInt(1000) + " 'quoted " + random.nextInt(10) + "' x";
+    }
+
+    private static String longLine(Random random){
+        StringBuilder line = new StringBuilder();
+        while(line.length() < 64 * 1024){
+            line.append("word").append(random.nextInt(10000)).append(random.nextInt(8) == 0? " 'a b' " : " ");
+        }
+        return line.toString();
+    }
+
+    private static String nestedLine(Random random){
+        StringBuilder line = new StringBuilder();
+        while(line.length() < 200){
+            int depth = 1 + random.nextInt(6);
+            for(int d = 0; d < depth; d++){
+                line.append(d % 2 == 0? "(a " : "'b ");
+            }
+            for(int d = depth - 1; d >= 0; d--){
+                line.append(d % 2 == 0? " c)" : " d'");
+            }
+            line.append(' ');
+        }
+        return line.toString();
+    }
+
+    private static String escapeLine(Random random){
+        StringBuilder line = new StringBuilder();
+        while(line.length() < 200){
+            line.append("a\\ b").append(random.nextInt(100)).append("\\'q\\\\ ");
+        }
+        return line.toString();
+    }
+
+    private static String delimiterLine(Random random){
+        String delimiters = " ,;|:";
+        StringBuilder line = new StringBuilder();
+        while(line.length() < 200){
+            line.append('f').append(random.nextInt(1000)).append(delimiters.charAt(random.nextInt(delimiters.length())));
+        }
+        return line.toString();
+    }
+
+    private static String multiLine(Random random){
+        StringBuilder line = new StringBuilder();
+        while(line.length() < 200){
+            line.append("key").append(random.nextInt(100)).append("::val").append(random.nextInt(1000))
+                .append(random.nextInt(4) == 0? "->'a::b'," : "->next,").append("\r\n");
+        }
+        return line.toString();
+    }
+
+    @Setup(Level.Trial)
+    public void setUp(){
+        Random random = new Random(42);
+        ArrayList<String> out = new ArrayList<>();
+        int size = 0;
+        while(size < TOTAL){
+            String line;
+            switch(shape){
+                case "short":
+                    line = shortLine(random);
+                    break;
+                case "long":
+                    line = longLine(random);
+                    break;
+                case "nested":
+                    line = nestedLine(random);
+                    break;
+                case "escapes":
+                    line = escapeLine(random);
+                    break;
+                case "multi":
+                    line = multiLine(random);
+                    break;
+                default:
+                    line = delimiterLine(random);
+            }
+            out.add(line);
+            size += line.length();
+        }
+        lines = out.toArray(new String[0]);
+        tokenizer = Tokenizer.builder().delimiters(' ', ',', ';', '|', ':').skipSymbols("('").build();
+        simpleTok = new SimpleTok(' ');
+        pattern = Pattern.compile("[ ,;|:]+");
+        multiTokenizer = Tokenizer.builder().delimiters(",", "::", "->", "\r\n").skipSymbols("('").build();
+        commaTokenizer = Tokenizer.builder().delimiters(',').skipSymbols("('").build();
+        multiPattern = Pattern.compile("::|->|\r\n");
+    }
+
+    /*====Tokenizers==================================================================================================*/
+
+    @Benchmark
+    public void tokenizerParse(Blackhole sink){
+        for(String line : lines){
+            sink.consume(tokenizer.setText(line).parse().toList());
+        }
+    }
+
+    @Benchmark
+    public void tokenizerParseSpans(Blackhole sink){
+        for(String line : lines){
+            sink.consume(tokenizer.setText(line).parseSpans().toSpans().size());
+        }
+    }
+
+    @Benchmark
+    public void simpleTokParse(Blackhole sink){
+        for(String line : lines){
+            sink.consume(simpleTok.setText(line).parse().toArray());
+        }
+    }
+
+    @Benchmark
+    public void simpleTokParseSpans(Blackhole sink){
+        for(String line : lines){
+            sink.consume(simpleTok.setText(line).parseSpans().toSpans().size());
+        }
+    }
+
+    /*====Multi-char delimiters======================================================================================*/
+
+    @Benchmark
+    public void multiCharDelimiters(Blackhole sink){
+        for(String line : lines){
+            sink.consume(multiTokenizer.setText(line).parseSpans().toSpans().size());
+        }
+    }
+
+    /** What multi-char delimiters replace: a regex pass that rewrites them to a single char first */
+    @Benchmark
+    public void regexPreSplit(Blackhole sink){
+        for(String line : lines){
+            sink.consume(commaTokenizer.setText(multiPattern.matcher(line).replaceAll(",")).parseSpans().toSpans().size());
+        }
+    }
+
+    /*====Baselines===================================================================================================*/
+
+    @Benchmark
+    public void stringSplit(Blackhole sink){
+        for(String line : lines){
+            sink.consume(line.split("[ ,;|:]"));
+        }
+    }
+
+    @Benchmark
+    public void stringTokenizer(Blackhole sink){
+        for(String line : lines){
+            StringTokenizer tokens = new StringTokenizer(line, " ,;|:");
+            while(tokens.hasMoreTokens()){
+                sink.consume(tokens.nextToken());
+            }
+        }
+    }
+
+    @Benchmark
+    public void precompiledRegex(Blackhole sink){
+        for(String line : lines){
+            sink.consume(pattern.split(line));
+        }
+    }
+}
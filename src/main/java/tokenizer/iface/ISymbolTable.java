@@ -0,0 +1,24 @@
+package tokenizer.iface;
+
+/** Maps token text to stable int ids, counting up from 0.
+ *  Lookups take a char range, so a token already in the table costs no String.
+ *  Safe to share between threads */
+public interface ISymbolTable {
+    /** @param text chars holding the token
+     * @param start offset of token, inclusive
+     * @param end offset of token, exclusive
+     * @return id of the token, added to the table if new */
+    int id(CharSequence text, int start, int end);
+
+    /** Same as id(CharSequence, int, int), for tokens assembled in a buffer */
+    int id(char[] text, int start, int end);
+
+    /** @return id of the token, or -1 if it is not in the table; never adds */
+    int find(CharSequence text, int start, int end);
+
+    /** @return canonical String of id; the same instance every time */
+    String symbol(int id);
+
+    /** @return number of symbols */
+    int size();
+}
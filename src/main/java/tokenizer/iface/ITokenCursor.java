@@ -0,0 +1,20 @@
+package tokenizer.iface;
+
+import java.util.Iterator;
+
+/** Tokens on demand: the text is scanned only as far as the last token asked for.
+ *  Same skip-symbol, escape and delimiter rules as parse(), same token Strings */
+public interface ITokenCursor extends Iterator<String> {
+    /** @return true if there is one more token; scans up to the end of it */
+    @Override
+    boolean hasNext();
+
+    /** @return next token, as parse() returns it */
+    @Override
+    String next();
+
+    /** Pass over tokens without creating Strings
+     * @param n number of tokens to skip
+     * @return number of tokens skipped, less than n at end of text */
+    int skip(int n);
+}
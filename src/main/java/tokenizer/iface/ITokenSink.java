@@ -0,0 +1,22 @@
+package tokenizer.iface;
+
+/** Receives tokens as the tokenizer finds them, so results go straight into the
+ *  caller's structures. Nothing is allocated per token: text is either the parsed
+ *  text itself or a reused buffer holding the token with escapes resolved, so read
+ *  it before returning. Structure callbacks do nothing unless overridden */
+public interface ITokenSink {
+    /** @param text holds the token, as parse() returns it, at [start, end) */
+    void token(CharSequence text, int start, int end);
+
+    /** An outermost skip area opens at offset */
+    default void enterSkip(char symbol, int offset){}
+
+    /** The outermost skip area closes at offset */
+    default void leaveSkip(char symbol, int offset){}
+
+    /** An unescaped delimiter outside skip areas at offset */
+    default void delimiter(char symbol, int offset){}
+
+    /** A multi-char delimiter, or a code point delimiter of two chars, outside skip areas at [start, end) of text */
+    default void delimiter(CharSequence text, int start, int end){}
+}
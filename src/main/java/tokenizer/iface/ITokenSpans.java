@@ -0,0 +1,46 @@
+package tokenizer.iface;
+
+/** Read-only view of token boundaries into the text that was parsed.
+ *  No String is created unless get() is called.
+ *  Spans index the original text: escape symbols inside a token are still there,
+ *  skip symbols removed by the tokenizer are outside the span.
+ *  The view is reused; the next parse overwrites it */
+public interface ITokenSpans {
+    /** @return the text the spans point into */
+    CharSequence text();
+
+    /** @return number of tokens */
+    int size();
+
+    /** @param i token index
+     * @return start offset of token in text, inclusive */
+    int start(int i);
+
+    /** @param i token index
+     * @return end offset of token in text, exclusive */
+    int end(int i);
+
+    /** @param i token index
+     * @return number of chars in token */
+    int length(int i);
+
+    /** @param i token index
+     * @param index char index within token
+     * @return char at index */
+    char charAt(int i, int index);
+
+    /** Compare token to other text without creating a String
+     * @param i token index
+     * @param other text to compare
+     * @return true if token chars equal other */
+    boolean contentEquals(int i, CharSequence other);
+
+    /** @param i token index
+     * @return same value String.hashCode() would return for this token */
+    int hash(int i);
+
+    /** Allocates; use for the tokens you actually keep
+     * @param i token index
+     * @return token as a new String, escape symbols not removed */
+    String get(int i);
+}
@@ -1,13 +1,127 @@
 package tokenizer.iface;
 
 import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
+/** Methods added after setText(String)/parse() have defaults built on those, so implementations
+ *  written against the first version keep working; the engines here override them all */
 public interface ITokenizer {
     ITokenizer setText(String text);
+
+    /** Text is read in place: StringBuilder, CharBuffer etc. are not copied to a String.
+     *  Do not modify it until you are done with the results. The default copies it to a String */
+    default ITokenizer setText(CharSequence text){
+        return this.setText(text.toString());
+    }
+
+    /** Tokenize part of a char array without copying it; span offsets are relative to offset.
+     *  The default copies the chars to a String
+     * @param text chars to tokenize
+     * @param offset index of first char
+     * @param length number of chars */
+    default ITokenizer setText(char[] text, int offset, int length){
+        return this.setText(new String(text, offset, length));
+    }
+
     ITokenizer setDelimiter(char... delimiter);
     ITokenizer parse();
+
+    /** Zero-copy alternative to parse(): records token boundaries only, no String is created.
+     *  Same skip-symbol and delimiter rules as parse(). Read the result with toSpans();
+     *  toList() and toArray() are not populated. No default: token boundaries cannot be
+     *  recovered from parse() results */
+    default ITokenizer parseSpans(){
+        throw new UnsupportedOperationException(this.getClass().getName() + " does not record spans");
+    }
+
     ArrayList<String> toList();
     String[] toArray();
+
+    /** Thread-safe alternative to setText(text).parse().toList(): all parse state lives in the call,
+     *  so one configured tokenizer can serve any number of threads without locking.
+     *  Do not call setDelimiter() while other threads use the tokenizer.
+     *  The default runs setText(text).parse() on this tokenizer, so it is not thread-safe
+     * @return new list of tokens, same as parse() gives */
+    default ArrayList<String> tokenize(CharSequence text){
+        return new ArrayList<>(this.setText(text).parse().toList());
+    }
+
+    /** Thread-safe alternative to setText(text).parseSpans().toSpans(); no default, as for parseSpans()
+     * @return new spans owned by the caller, not reused by later calls */
+    default ITokenSpans tokenizeSpans(CharSequence text){
+        throw new UnsupportedOperationException(this.getClass().getName() + " does not record spans");
+    }
+
+    /** Push alternative to tokenize(text): each token and delimiter goes to sink as it is found,
+     *  in text order, with nothing allocated in between. Thread-safe like tokenize().
+     *  The default passes the tokens of tokenize(text), with no structure callbacks */
+    default void tokenize(CharSequence text, ITokenSink sink){
+        for(String token : this.tokenize(text)){
+            sink.token(token, 0, token.length());
+        }
+    }
+
+    /** Symbol table mode: each token is looked up by its chars, so no String is created
+     *  for a token the table already knows. Thread-safe like tokenize().
+     *  The default looks up the Strings of tokenize(text)
+     * @param symbols table to look up and add to, may be shared
+     * @return token ids in text order; symbols.symbol(id) gives the canonical String */
+    default int[] tokenizeIds(CharSequence text, ISymbolTable symbols){
+        List<String> tokens = this.tokenize(text);
+        int[] ids = new int[tokens.size()];
+        for(int k = 0; k < ids.length; k++){
+            ids[k] = symbols.id(tokens.get(k), 0, tokens.get(k).length());
+        }
+        return ids;
+    }
+
+    /** Lazy stream of the tokens tokenize(text) gives, same order. Thread-safe like tokenize();
+     *  call parallel() on it to spread the work over cores where the engine can split text.
+     *  The default streams the list tokenize(text) returns */
+    default Stream<String> stream(CharSequence text){
+        return this.tokenize(text).stream();
+    }
+
+    /** Lazy stream of the ids tokenizeIds(text, symbols) gives, same order */
+    default IntStream idStream(CharSequence text, ISymbolTable symbols){
+        return IntStream.of(this.tokenizeIds(text, symbols));
+    }
+
+    /** Lazy alternative to tokenize(text): no work is done past the last token asked for.
+     *  Thread-safe like tokenize(); each cursor has its own scan state.
+     *  The default walks the list tokenize(text) returns */
+    default ITokenCursor cursor(CharSequence text){
+        final Iterator<String> tokens = this.tokenize(text).iterator();
+        return new ITokenCursor() {
+            @Override
+            public boolean hasNext() {
+                return tokens.hasNext();
+            }
+
+            @Override
+            public String next() {
+                return tokens.next();
+            }
+
+            @Override
+            public int skip(int n) {
+                int skipped = 0;
+                for(; skipped < n && tokens.hasNext(); skipped++){
+                    tokens.next();
+                }
+                return skipped;
+            }
+        };
+    }
+
+    /** @return token boundaries from the last parse() or parseSpans(); reused, overwritten by the next parse.
+     *  No default, as for parseSpans() */
+    default ITokenSpans toSpans(){
+        throw new UnsupportedOperationException(this.getClass().getName() + " does not record spans");
+    }
     int[] indents();
 
     /** Builder interface used to build the more complex implementation of Tokenizer */
@@ -17,6 +131,24 @@ public interface ITokenizer {
          */
         Builder delimiters(char... delimiter);
 
+        /**Delimiters of one or more chars, matched in the same pass as single ones.
+         * Where delimiters overlap, the first to end wins; of those ending together, the longest.
+         * A multi-char delimiter may not hold a single delimiter, skip or escape symbol.
+         * A code point above U+FFFF is a String of two chars, so it is matched as a whole
+         * @param delimiter All delimiters, for example: "::", "->", ","
+         * The default takes single chars only, through delimiters(char...)
+         */
+        default Builder delimiters(String... delimiter){
+            char[] chars = new char[delimiter.length];
+            for(int i = 0; i < chars.length; i++){
+                if(delimiter[i].length() != 1){
+                    throw new UnsupportedOperationException("Multi-char delimiter not supported: '" + delimiter[i] + "'");
+                }
+                chars[i] = delimiter[i].charAt(0);
+            }
+            return this.delimiters(chars);
+        }
+
         /**Areas enclosed in symbols are skipped by the tokenizer
          * Supports '(','{','[','<', single- and double-quote
          * Automatically adds the appropriate closing symbols
@@ -52,6 +184,22 @@ public interface ITokenizer {
          * (for cases where further processing needs to obey them too) */
         Builder keepEscapeSymbol();
 
+        /**Tokenizer removes escape symbols by default, keeping the escaped char as is
+         * Setting decodeEscapes turns standard sequences into the char they stand for,
+         * in the same pass: \n \t \r \b \f \0, backslash-u plus 4 hex digits;
+         * any other escaped char is itself, so \\ is one backslash (which escapes nothing).
+         * Cannot be combined with keepEscapeSymbol */
+        default Builder decodeEscapes(){
+            throw new UnsupportedOperationException("Escape decoding not supported");
+        }
+
+        /**With ' ' among the delimiters, chars below 33 delimit as well; setting unicodeWhitespace
+         * adds the rest of Unicode White_Space: NBSP, NEL, U+2000 to U+200A, U+2028, U+3000...
+         * ASCII text still takes one table lookup per char */
+        default Builder unicodeWhitespace(){
+            throw new UnsupportedOperationException("Unicode white space not supported");
+        }
+
         /**Tokenizer discards delimiters by default
          * Setting delimiterToElement causes delimiter to be written to
          * its own element (repeated delimiters are not ignored) */
@@ -0,0 +1,187 @@
+package tokenizer.impl;
+
+import tokenizer.iface.ISymbolTable;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**Tokenizer for many short lines at once, with columnar output.
+ * Rules: {@link TokenizerSpec}, applied to each line on its own. Every token of every line is written
+ * to one char arena, escapes already resolved; token boundaries and per-line token counts
+ * are int arrays. The arrays are reused between batches, so a warmed-up tokenizer parses
+ * a batch without allocating, however many tokens it holds.
+ * Token k spans arena()[start(k)..end(k)); tokens of line l are firstToken(l) on.
+ *
+ * Sample usage:
+ *   BatchTokenizer batch = new BatchTokenizer(spec).parse(lines);
+ *   for(int l = 0; l < batch.lines(); l++){
+ *       int first = batch.firstToken(l), count = batch.tokenCount(l);
+ *   }
+ */
+public class BatchTokenizer {
+    private final TokenizerSpec spec;
+    private final TokenScanner scanner;
+    private CharSequence line;              // being scanned
+    private char[] arena;
+    private int used;                       // chars of arena in use
+    private int[] bounds;                   // 0, end0, end1...: token k is [bounds[k], bounds[k + 1])
+    private int tokens;
+    private int[] lineBounds;               // 0, tokens up to end of line 0, line 1...
+    private int lines;
+
+    public BatchTokenizer(TokenizerSpec spec){
+        this.spec = spec;
+        this.arena = new char[1024];
+        this.bounds = new int[128];
+        this.lineBounds = new int[32];
+        this.scanner = new TokenScanner(spec) {
+            @Override
+            void emit(long start, long end) {
+                copy((int)start, (int)end);
+            }
+        };
+    }
+
+    /*====Private parts===============================================================================================*/
+
+    /** Token chars go to the arena as Tokenizer.parse() would return them */
+    private void copy(int start, int end){
+        if(arena.length - used < end - start){
+            arena = Arrays.copyOf(arena, Math.max(used + end - start, arena.length * 2));
+        }
+        if(!spec.keepEscapeSymbol && Escapes.any(line, start, end)){
+            used += Escapes.copy(line, start, end, arena, used, spec.decodeEscapes);
+        }
+        else if(line instanceof String){
+            ((String)line).getChars(start, end, arena, used);
+            used += end - start;
+        }
+        else{
+            for(int k = start; k < end; k++){
+                arena[used++] = line.charAt(k);
+            }
+        }
+        if(tokens + 2 > bounds.length){
+            bounds = Arrays.copyOf(bounds, bounds.length * 2);
+        }
+        bounds[++tokens] = used;
+    }
+
+    private void scan(CharSequence text){
+        this.line = text;
+        int len = text.length();
+        scanner.reset(0);
+        for (int i = 0; i < len; i++) {
+            scanner.step(text.charAt(i), i);
+        }
+        scanner.finish(len);
+        if(lines + 2 > lineBounds.length){
+            lineBounds = Arrays.copyOf(lineBounds, lineBounds.length * 2);
+        }
+        lineBounds[++lines] = tokens;
+    }
+
+    private void clear(){
+        used = 0;
+        tokens = 0;
+        lines = 0;
+        line = null;
+    }
+
+    private int check(int k){
+        if(k < 0 || k >= tokens){
+            throw new IndexOutOfBoundsException("token " + k + " of " + tokens);
+        }
+        return k;
+    }
+
+    /*====Public parts================================================================================================*/
+
+    /** Results of the previous batch are overwritten; the flight recorder sees the batch as one parse */
+    public BatchTokenizer parse(List<? extends CharSequence> lines){
+        ParseEvent event = TokenizerEvents.begin();
+        this.clear();
+        long chars = 0;
+        int maxDepth = 0, escapes = 0;
+        for(CharSequence text : lines){
+            this.scan(text);
+            chars += text.length();
+            maxDepth = Math.max(maxDepth, scanner.maxDepth());
+            escapes += scanner.escapes();
+        }
+        this.line = null;
+        TokenizerEvents.end(event, "BatchTokenizer", chars, tokens, maxDepth, escapes);
+        return this;
+    }
+
+    /** Results of the previous batch are overwritten */
+    public BatchTokenizer parse(CharSequence[] lines){
+        return this.parse(Arrays.asList(lines));
+    }
+
+    /** @return number of lines in batch */
+    public int lines(){
+        return lines;
+    }
+
+    /** @return number of tokens in batch, all lines */
+    public int tokens(){
+        return tokens;
+    }
+
+    /** @return index of the first token of line */
+    public int firstToken(int line){
+        if(line < 0 || line >= lines){
+            throw new IndexOutOfBoundsException("line " + line + " of " + lines);
+        }
+        return lineBounds[line];
+    }
+
+    /** @return number of tokens in line */
+    public int tokenCount(int line){
+        return lineBounds[line + 1] - this.firstToken(line);
+    }
+
+    /** @return chars of all tokens, back to back; valid until the next parse */
+    public char[] arena(){
+        return arena;
+    }
+
+    /** @return arena offset of token k, inclusive */
+    public int start(int k){
+        return bounds[check(k)];
+    }
+
+    /** @return arena offset of token k, exclusive */
+    public int end(int k){
+        return bounds[check(k) + 1];
+    }
+
+    public int length(int k){
+        return end(k) - start(k);
+    }
+
+    /** @return true if token k equals other, without creating a String */
+    public boolean contentEquals(int k, CharSequence other){
+        int start = start(k), len = end(k) - start;
+        if(other.length() != len){
+            return false;
+        }
+        for(int i = 0; i < len; i++){
+            if(arena[start + i] != other.charAt(i)){
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** @return symbol id of token k, see ISymbolTable */
+    public int id(int k, ISymbolTable symbols){
+        return symbols.id(arena, start(k), end(k));
+    }
+
+    /** @return token k as a new String */
+    public String get(int k){
+        return new String(arena, start(k), length(k));
+    }
+}
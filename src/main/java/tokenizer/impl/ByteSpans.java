@@ -0,0 +1,139 @@
+package tokenizer.impl;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/** Token boundaries into byte input, as byte offsets.
+ *  Nothing is decoded until get() or decode() is called for a token.
+ *  Reused between parses, like TokenSpans. */
+public class ByteSpans {
+    private static final byte escape = (byte)TokenizerSpec.escape;
+    private final Charset charset;
+    private final boolean keepEscapeSymbol;
+    private final boolean decodeEscapes;
+    private byte[] array;                   // input when scanning a byte array or heap buffer
+    private ByteBuffer buffer;              // input when scanning a direct buffer
+    private int base;                       // index of offset 0 in array or buffer
+    private byte[] scratch;                 // copy buffer for direct buffers and escape removal
+    private int[] bounds;                   // start0, end0, start1, end1...
+    private int size;
+
+    ByteSpans(Charset charset, TokenizerSpec spec){
+        this.charset = charset;
+        this.keepEscapeSymbol = spec.keepEscapeSymbol;
+        this.decodeEscapes = spec.decodeEscapes;
+        this.bounds = new int[32];
+        this.scratch = new byte[0];
+    }
+
+    void reset(byte[] array, ByteBuffer buffer, int base){
+        this.array = array;
+        this.buffer = buffer;
+        this.base = base;
+        this.size = 0;
+    }
+
+    void add(int start, int end){
+        int k = size * 2;
+        if(k == bounds.length){
+            bounds = Arrays.copyOf(bounds, k * 2);
+        }
+        bounds[k] = start;
+        bounds[k + 1] = end;
+        size++;
+    }
+
+    private int check(int i){
+        if(i < 0 || i >= size){
+            throw new IndexOutOfBoundsException("token " + i + " of " + size);
+        }
+        return i;
+    }
+
+    private byte at(int offset){
+        return (array != null)? array[base + offset] : buffer.get(base + offset);
+    }
+
+    /** @return number of tokens */
+    public int size(){
+        return size;
+    }
+
+    /** @return start byte offset of token, inclusive */
+    public int start(int i){
+        return bounds[check(i) * 2];
+    }
+
+    /** @return end byte offset of token, exclusive */
+    public int end(int i){
+        return bounds[check(i) * 2 + 1];
+    }
+
+    /** @return number of bytes in token */
+    public int length(int i){
+        return end(i) - start(i);
+    }
+
+    /** @return byte at index within token */
+    public byte byteAt(int i, int index){
+        if(index < 0 || index >= length(i)){
+            throw new IndexOutOfBoundsException("index " + index + " in token " + i);
+        }
+        return at(start(i) + index);
+    }
+
+    /** Compare raw token bytes without decoding
+     * @return true if token bytes equal other */
+    public boolean contentEquals(int i, byte[] other){
+        int start = start(i), len = end(i) - start;
+        if(other.length != len){
+            return false;
+        }
+        for(int k = 0; k < len; k++){
+            if(at(start + k) != other[k]){
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** @return hash of raw token bytes, computed like Arrays.hashCode(byte[]) */
+    public int hash(int i){
+        int h = 1;
+        for(int k = start(i), end = end(i); k < end; k++){
+            h = 31 * h + at(k);
+        }
+        return h;
+    }
+
+    /** @return token decoded to a new String, escape symbols not removed */
+    public String get(int i){
+        return decode(start(i), end(i), false);
+    }
+
+    /** @return token decoded to a new String the way Tokenizer.parse() returns it */
+    public String decode(int i){
+        if(decodeEscapes){// sequences like \\uXXXX are chars, not bytes: decode the charset first
+            return Escapes.decode(decode(start(i), end(i), false));
+        }
+        return decode(start(i), end(i), !keepEscapeSymbol);
+    }
+
+    private String decode(int start, int end, boolean unescape){
+        if(array != null && !unescape){
+            return new String(array, base + start, end - start, charset);
+        }
+        if(scratch.length < end - start){
+            scratch = new byte[Math.max(end - start, scratch.length * 2)];
+        }
+        int n = 0;
+        for(int k = start; k < end; k++){
+            byte curr = at(k);
+            if(!unescape || curr != escape){
+                scratch[n++] = curr;
+            }
+        }
+        return new String(scratch, 0, n, charset);
+    }
+}
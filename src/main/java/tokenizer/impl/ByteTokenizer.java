@@ -0,0 +1,108 @@
+package tokenizer.impl;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+/**Tokenizer for encoded input: scans byte[] or ByteBuffer without decoding it.
+ * Rules: {@link TokenizerSpec}, matched against raw bytes.
+ * Only the tokens read with ByteSpans.get() or decode() are turned into Strings.
+ * Supports Latin-1 and UTF-8 (and its subset US-ASCII).
+ * UTF-8 is scanned a byte at a time: bytes of multi-byte chars are all 0x80 or above,
+ * so they never match an ASCII symbol. For that reason every delimiter and skip symbol
+ * must be ASCII when the charset is UTF-8.
+ *
+ * Sample usage:
+ *   TokenizerSpec spec = Tokenizer.builder().delimiters(' ').skipSymbols("'").buildSpec();
+ *   ByteSpans spans = new ByteTokenizer(spec, StandardCharsets.UTF_8).setInput(bytes).parse().toSpans();
+ *   String first = spans.decode(0);
+ */
+public class ByteTokenizer {
+    private final ByteSpans spans;
+    private final TokenScanner scanner;
+    private byte[] array;
+    private ByteBuffer buffer;
+    private int offset, length;
+
+    public ByteTokenizer(TokenizerSpec spec, Charset charset){
+        checkSymbols(spec, charset);
+        this.spans = new ByteSpans(charset, spec);
+        this.scanner = new TokenScanner(spec) {
+            @Override
+            void emit(long start, long end) {
+                spans.add((int)start, (int)end);
+            }
+        };
+    }
+
+    /** Bytes are matched against symbols one at a time, which is only sound for these charsets */
+    static void checkSymbols(TokenizerSpec spec, Charset charset){
+        char limit;
+        if(StandardCharsets.UTF_8.equals(charset) || StandardCharsets.US_ASCII.equals(charset)){
+            limit = 0x80;
+        }
+        else if(StandardCharsets.ISO_8859_1.equals(charset)){
+            limit = 0x100;
+        }
+        else{
+            throw new IllegalStateException("Byte input supports UTF-8, US-ASCII and ISO-8859-1, not " + charset);
+        }
+        if(spec.maxSymbol() >= limit){
+            throw new IllegalStateException("Symbol out of range for " + charset + ": " + spec.maxSymbol());
+        }
+        if(spec.unicodeWhitespace){// bytes past 0x7F are not chars, so they cannot be told apart
+            throw new IllegalStateException("Unicode white space needs char input, not " + charset + " bytes");
+        }
+    }
+
+    /** Span offsets are relative to offset */
+    public ByteTokenizer setInput(byte[] bytes, int offset, int length){
+        this.array = bytes;
+        this.buffer = null;
+        this.offset = offset;
+        this.length = length;
+        return this;
+    }
+
+    public ByteTokenizer setInput(byte[] bytes){
+        return this.setInput(bytes, 0, bytes.length);
+    }
+
+    /** Reads position to limit without moving the position; span offsets are relative to position */
+    public ByteTokenizer setInput(ByteBuffer buffer){
+        if(buffer.hasArray()){
+            return this.setInput(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+        }
+        this.array = null;
+        this.buffer = buffer;
+        this.offset = buffer.position();
+        this.length = buffer.remaining();
+        return this;
+    }
+
+    public ByteTokenizer parse(){
+        ParseEvent event = TokenizerEvents.begin();
+        spans.reset(array, buffer, offset);
+        scanner.reset(0);
+        if(array != null){
+            byte[] array = this.array;
+            for(int i = 0; i < length; i++){
+                scanner.step((char)(array[offset + i] & 0xFF), i);
+            }
+        }
+        else{
+            ByteBuffer buffer = this.buffer;
+            for(int i = 0; i < length; i++){
+                scanner.step((char)(buffer.get(offset + i) & 0xFF), i);
+            }
+        }
+        scanner.finish(length);
+        TokenizerEvents.end(event, "ByteTokenizer", length, spans.size(), scanner.maxDepth(), scanner.escapes());
+        return this;
+    }
+
+    /** @return token boundaries from the last parse(); reused, overwritten by the next parse */
+    public ByteSpans toSpans(){
+        return spans;
+    }
+}
@@ -0,0 +1,38 @@
+package tokenizer.impl;
+
+/** Finds the next char of interest in a char array, one char per step.
+ *  VectorCharSearch, compiled apart from these sources (src/vector/java) since it needs
+ *  jdk.incubator.vector, compares many chars per step; it is loaded by name, and this class
+ *  stands in when it is missing or the JVM runs without --add-modules jdk.incubator.vector */
+class CharSearch {
+    /** VectorCharSearch if it loads, else the scalar search */
+    static final CharSearch INSTANCE = load();
+
+    CharSearch(){}
+
+    private static CharSearch load(){
+        try{
+            return (CharSearch)Class.forName("tokenizer.impl.VectorCharSearch").getDeclaredConstructor().newInstance();
+        }
+        catch(ReflectiveOperationException | LinkageError | RuntimeException e){// not built, module not added, lanes too few
+            return new CharSearch();
+        }
+    }
+
+    /** @return chars compared per step */
+    int lanes(){
+        return 1;
+    }
+
+    /** @param above chars at or above it are of interest too, if it is at most Character.MAX_VALUE
+     * @return index of the first char in [from, to) that is a or b, or below 'below', or not below 'above'; to if none */
+    int find(char[] text, int from, int to, char a, char b, char below, int above){
+        for(; from < to; from++){
+            char curr = text[from];
+            if(curr == a || curr == b || curr < below || curr >= above){
+                return from;
+            }
+        }
+        return to;
+    }
+}
@@ -0,0 +1,122 @@
+package tokenizer.impl;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+
+/** Aho-Corasick automaton for multi-char delimiters, compiled to a dense transition table.
+ *  Fed one char at a time from the scan loop, so any number of delimiters costs one table lookup
+ *  per char. Chars that occur in no delimiter lead back to the root, state 0.
+ *  When several delimiters end at the same char, the longest one is reported. */
+final class DelimiterMatcher {
+    private final char[] symbols;               // char -> column + 1, 0 for chars in no delimiter; indexed by char
+    private final int width;
+    private final int[] next;                   // next state, indexed by state * width + column
+    private final int[] match;                  // length of the longest delimiter ending in state, 0 if none
+    private final int[] seen;                   // number of chars of the delimiter prefix that state stands for
+    final String[] delimiters;
+
+    DelimiterMatcher(String[] delimiters){
+        this.delimiters = delimiters.clone();
+        char max = 0;
+        for(String delimiter : delimiters){
+            if(delimiter.length() < 2){
+                throw new IllegalStateException("Multi-char delimiter expected: '" + delimiter + "'");
+            }
+            for(int k = 0; k < delimiter.length(); k++){
+                max = (char)Math.max(max, delimiter.charAt(k));
+            }
+        }
+        this.symbols = new char[max + 1];
+        int columns = 1;
+        for(String delimiter : delimiters){
+            for(int k = 0; k < delimiter.length(); k++){
+                if(symbols[delimiter.charAt(k)] == 0){
+                    symbols[delimiter.charAt(k)] = (char)columns++;
+                }
+            }
+        }
+        this.width = columns;
+
+        // trie, -1 for no edge yet
+        int states = 1;
+        for(String delimiter : delimiters){
+            states += delimiter.length();
+        }
+        int[] table = new int[states * width];
+        int[] lengths = new int[states];
+        int[] depths = new int[states];
+        Arrays.fill(table, -1);
+        int used = 1;
+        for(String delimiter : delimiters){
+            int state = 0;
+            for(int k = 0; k < delimiter.length(); k++){
+                int cell = state * width + symbols[delimiter.charAt(k)];
+                if(table[cell] == -1){
+                    depths[used] = k + 1;
+                    table[cell] = used++;
+                }
+                state = table[cell];
+            }
+            lengths[state] = delimiter.length();
+        }
+
+        // failure links in breadth-first order turn missing edges into the edges of the longest suffix state
+        int[] fail = new int[used];
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        for(int c = 0; c < width; c++){
+            int child = table[c];
+            if(child <= 0){
+                table[c] = 0;
+            }
+            else{
+                queue.add(child);
+            }
+        }
+        while(!queue.isEmpty()){
+            int state = queue.poll();
+            lengths[state] = Math.max(lengths[state], lengths[fail[state]]);
+            for(int c = 1; c < width; c++){
+                int cell = state * width + c;
+                int child = table[cell];
+                int fallback = table[fail[state] * width + c];
+                if(child == -1){
+                    table[cell] = fallback;
+                }
+                else{
+                    fail[child] = fallback;
+                    queue.add(child);
+                }
+            }
+            table[state * width] = 0;
+        }
+        this.next = Arrays.copyOf(table, used * width);
+        this.match = Arrays.copyOf(lengths, used);
+        this.seen = Arrays.copyOf(depths, used);
+    }
+
+    /** @return state after feeding symbol in state */
+    int next(int state, char symbol){
+        int column = (symbol < symbols.length)? symbols[symbol] : 0;
+        return next[state * width + column];
+    }
+
+    /** @return length of the delimiter that ends in state, 0 if none */
+    int match(int state){
+        return match[state];
+    }
+
+    /** @return number of chars already fed that may start a delimiter, in state */
+    int seen(int state){
+        return seen[state];
+    }
+
+    /** @return true if symbol occurs in any delimiter */
+    boolean uses(char symbol){
+        return symbol < symbols.length && symbols[symbol] != 0;
+    }
+
+    /** @return the highest char in any delimiter */
+    char maxSymbol(){
+        return (char)(symbols.length - 1);
+    }
+}
@@ -0,0 +1,282 @@
+package tokenizer.impl;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**Batch job: tokenizes every regular file under a directory, one task per file.
+ * Tasks run on virtual threads where the JVM has them (Java 21+), else on a pool of daemon
+ * threads; either way at most 'concurrency' files are read and tokenized at once, so blocking
+ * reads overlap with tokenizing. All tasks share one Tokenizer through its thread-safe tokenize().
+ * Results go to the receiver one at a time, in path order if ordered, else as files finish.
+ * Ordered delivery holds at most 'concurrency' results: a file's slot is freed when it is delivered.
+ * Files that cannot be read or tokenized are counted as failed. If the receiver throws, or an Error
+ * stops a file, no more files are delivered and run() rethrows it.
+ *
+ * Sample usage:
+ *   DirectoryTokenizer.Report report = new DirectoryTokenizer(spec, UTF_8, 64).run(dir, false, receiver);
+ *   System.out.println(report);
+ */
+public class DirectoryTokenizer {
+    private final Tokenizer tokenizer;
+    private final Charset charset;
+    private final int concurrency;
+
+    /** Gets the tokens of one file; never called by two threads at once */
+    public interface Receiver {
+        void receive(Path file, List<String> tokens);
+    }
+
+    /** What a run did; rates are over wall time */
+    public static final class Report {
+        private final int files;
+        private final long bytes;
+        private final List<Path> failed;
+        private final long nanos;
+
+        private Report(int files, long bytes, List<Path> failed, long nanos){
+            this.files = files;
+            this.bytes = bytes;
+            this.failed = failed;
+            this.nanos = nanos;
+        }
+
+        /** @return number of files tokenized */
+        public int files(){
+            return files;
+        }
+
+        /** @return bytes read from files tokenized */
+        public long bytes(){
+            return bytes;
+        }
+
+        /** @return files that could not be read or tokenized, not passed to the receiver */
+        public List<Path> failed(){
+            return failed;
+        }
+
+        public long nanos(){
+            return nanos;
+        }
+
+        public double filesPerSecond(){
+            return files * 1e9 / Math.max(1, nanos);
+        }
+
+        public double bytesPerSecond(){
+            return bytes * 1e9 / Math.max(1, nanos);
+        }
+
+        @Override
+        public String toString(){
+            return String.format("%d files, %d bytes, %d failed in %.1f ms: %.1f files/s, %.1f bytes/s",
+                    files, bytes, failed.size(), nanos / 1e6, filesPerSecond(), bytesPerSecond());
+        }
+    }
+
+    public DirectoryTokenizer(TokenizerSpec spec, Charset charset, int concurrency){
+        if(concurrency < 1){
+            throw new IllegalStateException("Concurrency must be at least 1: " + concurrency);
+        }
+        this.tokenizer = new Tokenizer(spec);
+        this.charset = charset;
+        this.concurrency = concurrency;
+    }
+
+    /*====Private parts===============================================================================================*/
+
+    /** Virtual threads when the runtime has them; looked up by name so this builds on Java 17 */
+    private static ExecutorService newExecutor(){
+        try{
+            return (ExecutorService)Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        }
+        catch(ReflectiveOperationException e){
+            return Executors.newCachedThreadPool(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable task) {
+                    Thread thread = new Thread(task, "directory-tokenizer");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+    }
+
+    /** Shared state of one run. One thread at a time delivers, outside the lock, so a receiver that
+     *  blocks does not hold the monitor (and, on virtual threads, does not pin its carrier) */
+    private final class Run {
+        private final List<Path> files;
+        private final boolean ordered;
+        private final Receiver receiver;
+        private final Semaphore permits;
+        private final Object[] results;         // finished, not yet delivered
+        private final long[] sizes;
+        private final ArrayDeque<Integer> ready;// unordered: indices of finished files
+        private int next;                       // ordered: index of next file to deliver
+        private boolean delivering;             // some thread is in deliverAll()
+        private int done;
+        private long bytes;
+        private final List<Path> failed;
+        private volatile Throwable failure;     // receiver exception or Error that stopped the run
+
+        Run(List<Path> files, boolean ordered, Receiver receiver){
+            this.files = files;
+            this.ordered = ordered;
+            this.receiver = receiver;
+            this.permits = new Semaphore(concurrency);
+            this.results = new Object[files.size()];
+            this.sizes = new long[files.size()];
+            this.ready = new ArrayDeque<>();
+            this.failed = new ArrayList<>();
+        }
+
+        /** An Error is kept as the result too, so it stops the run at its turn and run() rethrows it */
+        void tokenize(int i){
+            Path file = files.get(i);
+            Object result;
+            long size = 0;
+            try{
+                byte[] content = Files.readAllBytes(file);
+                size = content.length;
+                result = tokenizer.tokenize(new String(content, charset));
+            }
+            catch(IOException | RuntimeException e){
+                result = e;
+            }
+            catch(Error e){
+                result = e;
+            }
+            this.finish(i, result, size);
+        }
+
+        /** @param result token list, or the exception that stopped the file */
+        private void finish(int i, Object result, long size){
+            synchronized(this){
+                results[i] = result;
+                sizes[i] = size;
+                if(!ordered){
+                    ready.add(i);
+                }
+                if(delivering){// the delivering thread picks it up
+                    return;
+                }
+                delivering = true;
+            }
+            this.deliverAll();
+        }
+
+        /** @return index of a file ready for delivery, -1 if none; called under the lock */
+        private int nextReady(){
+            if(!ordered){
+                Integer i = ready.poll();
+                return (i == null)? -1 : i;
+            }
+            return (next < results.length && results[next] != null)? next++ : -1;
+        }
+
+        private void deliverAll(){
+            while(true){
+                int i;
+                Object result;
+                synchronized(this){
+                    i = this.nextReady();
+                    if(i == -1){
+                        delivering = false;
+                        return;
+                    }
+                    result = results[i];
+                    results[i] = null;
+                }
+                try{
+                    this.deliver(i, result, sizes[i]);
+                }
+                finally{
+                    permits.release();
+                }
+            }
+        }
+
+        /** Once the run has failed, the remaining files are dropped */
+        @SuppressWarnings("unchecked")
+        private void deliver(int i, Object result, long size){
+            if(failure != null){
+                return;
+            }
+            if(result instanceof Error){
+                failure = (Error)result;
+                return;
+            }
+            if(result instanceof Exception){
+                failed.add(files.get(i));
+                return;
+            }
+            try{
+                receiver.receive(files.get(i), (List<String>)result);
+                done++;
+                bytes += size;
+            }
+            catch(Throwable e){// kept for run() to rethrow, so a failing receiver cannot stall delivery
+                failure = e;
+            }
+        }
+    }
+
+    /*====Public parts================================================================================================*/
+
+    /** Blocks until every file is delivered
+     * @param ordered true to deliver in path order, false as files finish
+     * @return counts and rates of this run
+     * @throws IllegalStateException wrapping a checked exception the receiver threw; unchecked ones and Errors
+     *  are rethrown as is */
+    public Report run(Path root, boolean ordered, Receiver receiver) throws IOException, InterruptedException {
+        long start = System.nanoTime();
+        List<Path> files = new ArrayList<>();
+        try(Stream<Path> walk = Files.walk(root)){
+            walk.filter(Files::isRegularFile).sorted().forEach(files::add);
+        }
+        final Run run = new Run(files, ordered, receiver);
+        ExecutorService executor = newExecutor();
+        try{
+            for(int i = 0; i < files.size() && run.failure == null; i++){
+                run.permits.acquire();
+                final int index = i;
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        run.tokenize(index);
+                    }
+                });
+            }
+            run.permits.acquire(concurrency);// every file delivered
+        }
+        finally{
+            executor.shutdown();
+            executor.awaitTermination(1, TimeUnit.MINUTES);
+        }
+        Throwable failure = run.failure;
+        if(failure instanceof RuntimeException){
+            throw (RuntimeException)failure;
+        }
+        if(failure instanceof Error){
+            throw (Error)failure;
+        }
+        if(failure != null){
+            throw new IllegalStateException("Receiver failed", failure);
+        }
+        synchronized(run){
+            return new Report(run.done, run.bytes, Collections.unmodifiableList(run.failed), System.nanoTime() - start);
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package tokenizer.impl;
+
+/** Escape removal and decoding for raw token text, one linear pass per token.
+ *  Removing: every escape symbol is dropped, the char after it stays as is.
+ *  Decoding: standard sequences become the char they stand for:
+ *  \n \t \r \b \f \0, \\uXXXX, and any other escaped char is itself (\' \\ \_ ...) */
+final class Escapes {
+    private static final char escape = TokenizerSpec.escape;
+
+    private Escapes(){}
+
+    /** Output is never longer than input, so out needs end - start chars
+     * @return number of chars written to out */
+    static int copy(CharSequence text, int start, int end, char[] out, boolean decode){
+        return copy(text, start, end, out, 0, decode);
+    }
+
+    /** Same as copy(text, start, end, out, decode), writing from out[at] on */
+    static int copy(CharSequence text, int start, int end, char[] out, int at, boolean decode){
+        int n = at;
+        for(int k = start; k < end; k++){
+            char curr = text.charAt(k);
+            if(curr != escape){
+                out[n++] = curr;
+            }
+            else if(decode && k + 1 < end){
+                k++;
+                char next = text.charAt(k);
+                if(next == 'u' && k + 4 < end && hex(text, k + 1) >= 0){
+                    out[n++] = (char)hex(text, k + 1);
+                    k += 4;
+                }
+                else{
+                    out[n++] = decode(next);
+                }
+            }
+        }
+        return n - at;
+    }
+
+    /** @return raw with standard sequences decoded; raw itself if it holds no escape symbol */
+    static String decode(String raw){
+        if(!any(raw, 0, raw.length())){
+            return raw;
+        }
+        char[] out = new char[raw.length()];
+        return new String(out, 0, copy(raw, 0, raw.length(), out, true));
+    }
+
+    /** @return true if text holds any escape symbol in range */
+    static boolean any(CharSequence text, int start, int end){
+        for(int k = start; k < end; k++){
+            if(text.charAt(k) == escape){
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static char decode(char escaped){
+        switch(escaped){
+            case 'n':
+                return '\n';
+            case 't':
+                return '\t';
+            case 'r':
+                return '\r';
+            case 'b':
+                return '\b';
+            case 'f':
+                return '\f';
+            case '0':
+                return '\0';
+            default:
+                return escaped;
+        }
+    }
+
+    /** @return value of 4 hex digits at k, or -1 if they are not all hex */
+    private static int hex(CharSequence text, int k){
+        int value = 0;
+        for(int i = k; i < k + 4; i++){
+            int digit = Character.digit(text.charAt(i), 16);
+            if(digit < 0){
+                return -1;
+            }
+            value = value * 16 + digit;
+        }
+        return value;
+    }
+}
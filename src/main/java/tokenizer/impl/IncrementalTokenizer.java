@@ -0,0 +1,332 @@
+package tokenizer.impl;
+
+import tokenizer.iface.ITokenSpans;
+
+/**Tokenizer for text that changes a little at a time, as in an editor.
+ * Rules: {@link TokenizerSpec}, applied to a text that is edited in place.
+ * After setText() the tokens are kept; edit() then rescans only around the change and keeps
+ * everything else.
+ * While scanning, tokens are marked with checkpoints: offsets where the scan state equals a fresh
+ * scan (no escape pending, outside skip areas, no text pending). An edit restarts from the last
+ * checkpoint before it and stops at the first checkpoint after it where the new scan is in the same
+ * state, so a keystroke costs the size of the edit and the tokens around it, not the document.
+ * Text and tokens are gap buffers: the gap follows the edits, and offsets past it are kept relative
+ * to the end of the text so they need no shifting.
+ *
+ * Sample usage:
+ *   IncrementalTokenizer tokens = new IncrementalTokenizer(spec).setText(document);
+ *   tokens.edit(offset, removed, inserted);
+ *   for(int i = tokens.firstChanged(); i < tokens.lastChanged(); i++){ ... tokens.decode(i) ... }
+ */
+public class IncrementalTokenizer implements ITokenSpans {
+    private static final int NONE = Integer.MIN_VALUE;     // token without checkpoint
+    private final TokenizerSpec spec;
+    private final TokenScanner scanner;
+    private final GapText text;
+    private int[] tokens;                       // start, end, checkpoint per token; gap between lo and hi
+    private int lo, hi;                         // tokens before the gap, index of first token after it
+    private boolean emitted;                    // current step emitted a token
+    private int firstChanged, lastChanged, rescanned;
+    private char[] scratch;
+
+    public IncrementalTokenizer(TokenizerSpec spec){
+        this.spec = spec;
+        this.text = new GapText();
+        this.tokens = new int[3 * 16];
+        this.hi = 16;
+        this.scratch = new char[0];
+        this.scanner = new TokenScanner(spec) {
+            @Override
+            void emit(long start, long end) {
+                push((int)start, (int)end);
+                emitted = true;
+            }
+        };
+    }
+
+    /*====Private parts===============================================================================================*/
+
+    /** Text with a gap at the last edit, so typing does not move the whole document */
+    private static final class GapText implements CharSequence {
+        private char[] buf = new char[16];
+        private int gapStart, gapEnd = 16;
+
+        @Override
+        public int length() {
+            return buf.length - (gapEnd - gapStart);
+        }
+
+        @Override
+        public char charAt(int index) {
+            return (index < gapStart)? buf[index] : buf[index + gapEnd - gapStart];
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            StringBuilder out = new StringBuilder(end - start);
+            for(int k = start; k < end; k++){
+                out.append(this.charAt(k));
+            }
+            return out;
+        }
+
+        @Override
+        public String toString() {
+            return new StringBuilder(this.length()).append(buf, 0, gapStart).append(buf, gapEnd, buf.length - gapEnd).toString();
+        }
+
+        void replace(int offset, int removed, CharSequence inserted){
+            int n = inserted.length();
+            if(gapEnd - gapStart + removed < n){
+                int size = Math.max(buf.length * 2, this.length() + n + 16);
+                char[] grown = new char[size];
+                int tail = buf.length - gapEnd;
+                System.arraycopy(buf, 0, grown, 0, gapStart);
+                System.arraycopy(buf, gapEnd, grown, size - tail, tail);
+                gapEnd = size - tail;
+                buf = grown;
+            }
+            if(offset < gapStart){
+                int move = gapStart - offset;
+                System.arraycopy(buf, offset, buf, gapEnd - move, move);
+                gapStart -= move;
+                gapEnd -= move;
+            }
+            else if(offset > gapStart){
+                int move = offset - gapStart;
+                System.arraycopy(buf, gapEnd, buf, gapStart, move);
+                gapStart += move;
+                gapEnd += move;
+            }
+            gapEnd += removed;
+            for(int k = 0; k < n; k++){
+                buf[gapStart++] = inserted.charAt(k);
+            }
+        }
+    }
+
+    /** Offsets after the gap are stored as offset - text length */
+    private int value(int k, int field){
+        if(k < lo){
+            return tokens[k * 3 + field];
+        }
+        int v = tokens[(hi + k - lo) * 3 + field];
+        return (v == NONE)? NONE : v + text.length();
+    }
+
+    private int capacity(){
+        return tokens.length / 3;
+    }
+
+    /** Add a token before the gap */
+    private void push(int start, int end){
+        if(lo == hi){
+            int cap = capacity(), tail = cap - hi, grown = cap * 2;
+            int[] bigger = new int[grown * 3];
+            System.arraycopy(tokens, 0, bigger, 0, lo * 3);
+            System.arraycopy(tokens, hi * 3, bigger, (grown - tail) * 3, tail * 3);
+            tokens = bigger;
+            hi = grown - tail;
+        }
+        int k = lo * 3;
+        tokens[k] = start;
+        tokens[k + 1] = end;
+        tokens[k + 2] = NONE;
+        lo++;
+    }
+
+    /** Move the gap so that exactly t tokens are before it */
+    private void moveGap(int t){
+        int len = text.length();
+        while(lo > t){
+            lo--;
+            hi--;
+            for(int f = 0; f < 3; f++){
+                int v = tokens[lo * 3 + f];
+                tokens[hi * 3 + f] = (v == NONE)? NONE : v - len;
+            }
+        }
+        while(lo < t){
+            for(int f = 0; f < 3; f++){
+                int v = tokens[hi * 3 + f];
+                tokens[lo * 3 + f] = (v == NONE)? NONE : v + len;
+            }
+            lo++;
+            hi++;
+        }
+    }
+
+    /** Scan text from offset 'from' in state reset(from). Old tokens after the gap are dropped as the
+     *  scan passes them, until the scan is past 'resync' and at an old checkpoint in the same state */
+    private void rescan(int from, int resync){
+        int len = text.length();
+        int lastSync = NONE;                    // checkpoint of the last old token dropped
+        scanner.reset(from);
+        for(int p = from; ; p++){
+            if(p >= resync){
+                while(hi < capacity() && tokens[hi * 3 + 1] + len <= p){
+                    int sync = tokens[hi * 3 + 2];
+                    lastSync = (sync == NONE)? NONE : sync + len;
+                    hi++;
+                }
+                if(lastSync == p && scanner.matchesReset(p)){
+                    break;
+                }
+            }
+            if(p == len){
+                scanner.finish(len);
+                hi = capacity();
+                break;
+            }
+            emitted = false;
+            scanner.step(text.charAt(p), p);
+            if(emitted && scanner.matchesReset(p + 1)){
+                tokens[lo * 3 - 1] = p + 1;
+            }
+            rescanned++;
+        }
+    }
+
+    private int check(int i){
+        if(i < 0 || i >= this.size()){
+            throw new IndexOutOfBoundsException("token " + i + " of " + this.size());
+        }
+        return i;
+    }
+
+    /*====Public parts================================================================================================*/
+
+    /** Full scan; the text is copied */
+    public IncrementalTokenizer setText(CharSequence text){
+        this.text.replace(0, this.text.length(), text);
+        lo = 0;
+        hi = capacity();
+        rescanned = 0;
+        this.rescan(0, 0);
+        firstChanged = 0;
+        lastChanged = lo;
+        return this;
+    }
+
+    /** Replace a range of the text and bring the tokens up to date
+     * @param offset where the edit starts
+     * @param removed number of chars removed from offset
+     * @param inserted text put in their place */
+    public IncrementalTokenizer edit(int offset, int removed, CharSequence inserted){
+        if(offset < 0 || removed < 0 || offset + removed > text.length()){
+            throw new IllegalStateException("Edit out of range: " + offset + "+" + removed + " of " + text.length());
+        }
+        // tokens ending at or before offset were emitted before the scan saw the edit
+        int t = lo;
+        while(t > 0 && this.value(t - 1, 1) > offset){
+            t--;
+        }
+        while(t < this.size() && this.value(t, 1) <= offset){
+            t++;
+        }
+        this.moveGap(t);
+        // back to a checkpoint at or before offset; tokens after it are rescanned
+        while(lo > 0 && (tokens[lo * 3 - 1] == NONE || tokens[lo * 3 - 1] > offset)){
+            lo--;
+        }
+        int from = (lo == 0)? 0 : tokens[lo * 3 - 1];
+        text.replace(offset, removed, inserted);
+        firstChanged = lo;
+        rescanned = 0;
+        this.rescan(from, offset + inserted.length());
+        lastChanged = lo;
+        return this;
+    }
+
+    /** @return index of the first token the last edit replaced or added */
+    public int firstChanged(){
+        return firstChanged;
+    }
+
+    /** @return index after the last token the last edit replaced or added; tokens from here on are the old ones */
+    public int lastChanged(){
+        return lastChanged;
+    }
+
+    /** @return number of chars scanned by the last edit or setText */
+    public int rescanned(){
+        return rescanned;
+    }
+
+    /** @return token as Tokenizer.parse() returns it */
+    public String decode(int i){
+        int start = this.start(i), end = this.end(i);
+        if(scratch.length < end - start){
+            scratch = new char[Math.max(end - start, scratch.length * 2)];
+        }
+        if(spec.keepEscapeSymbol){
+            for(int k = start; k < end; k++){
+                scratch[k - start] = text.charAt(k);
+            }
+            return new String(scratch, 0, end - start);
+        }
+        return new String(scratch, 0, Escapes.copy(text, start, end, scratch, spec.decodeEscapes));
+    }
+
+    /** @return the current text, edits applied; a live view, not a copy */
+    @Override
+    public CharSequence text() {
+        return text;
+    }
+
+    @Override
+    public int size() {
+        return lo + capacity() - hi;
+    }
+
+    @Override
+    public int start(int i) {
+        return this.value(this.check(i), 0);
+    }
+
+    @Override
+    public int end(int i) {
+        return this.value(this.check(i), 1);
+    }
+
+    @Override
+    public int length(int i) {
+        return this.end(i) - this.start(i);
+    }
+
+    @Override
+    public char charAt(int i, int index) {
+        if(index < 0 || index >= this.length(i)){
+            throw new IndexOutOfBoundsException("index " + index + " in token " + i);
+        }
+        return text.charAt(this.start(i) + index);
+    }
+
+    @Override
+    public boolean contentEquals(int i, CharSequence other) {
+        int start = this.start(i), len = this.end(i) - start;
+        if(other.length() != len){
+            return false;
+        }
+        for(int k = 0; k < len; k++){
+            if(text.charAt(start + k) != other.charAt(k)){
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int hash(int i) {
+        int h = 0;
+        for(int k = this.start(i), end = this.end(i); k < end; k++){
+            h = 31 * h + text.charAt(k);
+        }
+        return h;
+    }
+
+    @Override
+    public String get(int i) {
+        return text.subSequence(this.start(i), this.end(i)).toString();
+    }
+}
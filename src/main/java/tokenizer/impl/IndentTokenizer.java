@@ -0,0 +1,156 @@
+package tokenizer.impl;
+
+import tokenizer.iface.ITokenSpans;
+
+import java.util.Arrays;
+
+/**Line-oriented tokenizer for indentation-structured text (config files, outlines...).
+ * One pass over multi-line text: tokens as Tokenizer finds them, with markers in between,
+ * the way Python's tokenizer does it:
+ *   NEWLINE at the end of every line that holds a token
+ *   INDENT before the first token of a line indented deeper than the line before
+ *   DEDENT for each level closed by a line indented less, and for open levels at the end
+ * Blank lines give no markers. A newline inside a skip area or after an escape symbol
+ * joins the lines. A space counts 1, a tab moves to the next multiple of 8.
+ * The spec needs ' ' among its delimiters, so all whitespace including newlines delimits.
+ *
+ * Sample usage:
+ *   IndentTokenizer tokenizer = new IndentTokenizer(spec).parse(configText);
+ *   for(int i = 0; i < tokenizer.size(); i++){
+ *       if(tokenizer.kind(i) == IndentTokenizer.Kind.INDENT){ ... }
+ *   }
+ */
+public class IndentTokenizer {
+    public enum Kind { TOKEN, NEWLINE, INDENT, DEDENT }
+
+    private final TokenizerSpec spec;
+    private final TokenSpans spans;         // tokens, markers as empty spans at their offset
+    private final TokenScanner scanner;
+    private Kind[] kinds;
+    private int[] levels;                   // open indentation widths, levels[0] is 0
+    private int depth;
+    private int[] indents;                  // width of every line that holds a token
+    private int lines;
+
+    public IndentTokenizer(TokenizerSpec spec){
+        if(!spec.isDelimiter(' ')){
+            throw new IllegalStateException("Indentation mode needs ' ' among delimiters");
+        }
+        this.spec = spec;
+        this.spans = new TokenSpans();
+        this.kinds = new Kind[16];
+        this.levels = new int[8];
+        this.indents = new int[16];
+        this.scanner = new TokenScanner(spec) {
+            @Override
+            void emit(long start, long end) {
+                add(Kind.TOKEN, (int)start, (int)end);
+            }
+        };
+    }
+
+    /*====Private parts===============================================================================================*/
+
+    private void add(Kind kind, int start, int end){
+        if(spans.size() == kinds.length){
+            kinds = Arrays.copyOf(kinds, kinds.length * 2);
+        }
+        kinds[spans.size()] = kind;
+        spans.add(start, end);
+    }
+
+    /** First token of a line at offset i: open or close levels to match width */
+    private void indent(int width, int i){
+        if(lines == indents.length){
+            indents = Arrays.copyOf(indents, lines * 2);
+        }
+        indents[lines++] = width;
+        if(width > levels[depth - 1]){
+            if(depth == levels.length){
+                levels = Arrays.copyOf(levels, depth * 2);
+            }
+            levels[depth++] = width;
+            add(Kind.INDENT, i, i);
+        }
+        while(width < levels[depth - 1]){
+            depth--;
+            add(Kind.DEDENT, i, i);
+        }
+        if(width != levels[depth - 1]){
+            throw new IllegalStateException("Dedent matches no outer indentation level, line " + lines);
+        }
+    }
+
+    /*====Public parts================================================================================================*/
+
+    public IndentTokenizer parse(CharSequence text){
+        spans.reset(text);
+        scanner.reset(0);
+        depth = 1;
+        lines = 0;
+        boolean lineStart = true;
+        int width = 0, len = text.length();
+        for(int i = 0; i < len; i++){
+            char curr = text.charAt(i);
+            if(lineStart){
+                if(curr == ' '){
+                    width++;
+                }
+                else if(curr == '\t'){
+                    width = (width / 8 + 1) * 8;
+                }
+                else if(curr == '\n'){
+                    width = 0;
+                }
+                else if(curr >= 33){
+                    lineStart = false;
+                    this.indent(width, i);
+                }
+                scanner.step(curr, i);
+            }
+            else{
+                boolean lineEnd = curr == '\n' && !scanner.inSkipArea() && !scanner.escaped();
+                scanner.step(curr, i);
+                if(lineEnd){
+                    add(Kind.NEWLINE, i, i);
+                    lineStart = true;
+                    width = 0;
+                }
+            }
+        }
+        scanner.finish(len);
+        if(!lineStart){// last line has no newline
+            add(Kind.NEWLINE, len, len);
+        }
+        while(depth > 1){
+            depth--;
+            add(Kind.DEDENT, len, len);
+        }
+        return this;
+    }
+
+    /** @return number of tokens and markers */
+    public int size(){
+        return spans.size();
+    }
+
+    public Kind kind(int i){
+        spans.start(i);// bounds check
+        return kinds[i];
+    }
+
+    /** @return token as Tokenizer.parse() returns it; a marker reads as its Kind name */
+    public String get(int i){
+        return (kind(i) == Kind.TOKEN)? spans.get(i, spec) : kinds[i].name();
+    }
+
+    /** @return boundaries of tokens and markers; a marker is an empty span where it was found */
+    public ITokenSpans toSpans(){
+        return spans;
+    }
+
+    /** @return indentation width of each line that holds a token, in order */
+    public int[] indents(){
+        return Arrays.copyOf(indents, lines);
+    }
+}
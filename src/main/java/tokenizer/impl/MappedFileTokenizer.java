@@ -0,0 +1,188 @@
+package tokenizer.impl;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**Tokenizer that reads a file through memory-mapped windows instead of the heap.
+ * Rules: {@link TokenizerSpec}, matched against mapped bytes as in ByteTokenizer,
+ * so the same charset limits apply.
+ * Token positions are file offsets (long), so files over 2 GB work. Windows are mapped
+ * one after the other; skip areas, escapes and tokens may cross window boundaries.
+ * Nothing is decoded unless decode() is called.
+ *
+ * Sample usage:
+ *   try(MappedFileTokenizer tokenizer = new MappedFileTokenizer(spec, UTF_8).open(path)){
+ *       while(tokenizer.next()){
+ *           long start = tokenizer.start(), end = tokenizer.end();
+ *       }
+ *   }
+ */
+public class MappedFileTokenizer implements Closeable {
+    private static final int DEFAULT_WINDOW = 1 << 26;
+    private static final byte escape = (byte)TokenizerSpec.escape;
+    private final TokenizerSpec spec;
+    private final Charset charset;
+    private final int windowSize;
+    private final TokenScanner scanner;
+    private final long[] ready;                 // ring of start, end pairs found in current step
+    private int readyHead, readyCount;
+    private FileChannel channel;
+    private long fileSize;
+    private MappedByteBuffer window;
+    private long windowBase;                    // file offset of window[0]
+    private int windowLen, pos;
+    private boolean done;
+    private long start, end;                    // current token
+    private byte[] scratch;
+
+    public MappedFileTokenizer(TokenizerSpec spec, Charset charset){
+        this(spec, charset, DEFAULT_WINDOW);
+    }
+    public MappedFileTokenizer(TokenizerSpec spec, Charset charset, int windowSize){
+        ByteTokenizer.checkSymbols(spec, charset);
+        this.spec = spec;
+        this.charset = charset;
+        this.windowSize = windowSize;
+        this.ready = new long[8];
+        this.scratch = new byte[0];
+        this.scanner = new TokenScanner(spec) {
+            @Override
+            void emit(long start, long end) {
+                int k = ((readyHead + readyCount) % 4) * 2;
+                ready[k] = start;
+                ready[k + 1] = end;
+                readyCount++;
+            }
+        };
+    }
+
+    /*====Private parts===============================================================================================*/
+
+    private void mapNext() throws IOException {
+        windowBase += windowLen;
+        windowLen = (int)Math.min(windowSize, fileSize - windowBase);
+        pos = 0;
+        window = (windowLen == 0)? null : channel.map(FileChannel.MapMode.READ_ONLY, windowBase, windowLen);
+    }
+
+    /*====Public parts================================================================================================*/
+
+    /** Closes any file opened earlier */
+    public MappedFileTokenizer open(Path file) throws IOException {
+        this.close();
+        channel = FileChannel.open(file, StandardOpenOption.READ);
+        fileSize = channel.size();
+        windowBase = 0;
+        windowLen = 0;
+        readyCount = 0;
+        done = false;
+        scanner.reset(0);
+        this.mapNext();
+        return this;
+    }
+
+    /** Advance to the next token
+     * @return false at end of file */
+    public boolean next() throws IOException {
+        while(readyCount == 0){
+            if(pos == windowLen){
+                if(done){
+                    return false;
+                }
+                if(windowBase + windowLen == fileSize){
+                    done = true;
+                    scanner.finish(fileSize);
+                }
+                else{
+                    this.mapNext();
+                }
+            }
+            else{
+                scanner.step((char)(window.get(pos) & 0xFF), windowBase + pos);
+                pos++;
+            }
+        }
+        int k = readyHead * 2;
+        start = ready[k];
+        end = ready[k + 1];
+        readyHead = (readyHead + 1) % 4;
+        readyCount--;
+        return true;
+    }
+
+    /** @return file offset of current token, inclusive */
+    public long start(){
+        return start;
+    }
+
+    /** @return file offset of current token, exclusive */
+    public long end(){
+        return end;
+    }
+
+    /** @return current token as Tokenizer.parse() returns it */
+    public String decode() throws IOException {
+        return this.decode(start, end);
+    }
+
+    /** Decode any range of the open file; escape symbols are removed unless the spec keeps them
+     * @param start file offset, inclusive
+     * @param end file offset, exclusive
+     * @return decoded text */
+    public String decode(long start, long end) throws IOException {
+        if(end - start > Integer.MAX_VALUE){
+            throw new IllegalStateException("Token too long to decode: " + (end - start));
+        }
+        int len = (int)(end - start);
+        if(scratch.length < len){
+            scratch = new byte[Math.max(len, scratch.length * 2)];
+        }
+        if(start >= windowBase && end <= windowBase + windowLen){
+            for(int k = 0; k < len; k++){
+                scratch[k] = window.get((int)(start - windowBase) + k);
+            }
+        }
+        else{// outside the mapped window: positional read, goes through page cache as well
+            ByteBuffer dst = ByteBuffer.wrap(scratch, 0, len);
+            while(dst.hasRemaining()){
+                if(channel.read(dst, start + dst.position()) < 0){
+                    throw new IllegalStateException("Range beyond end of file: " + end);
+                }
+            }
+        }
+        int n = len;
+        if(spec.decodeEscapes){// sequences like \\uXXXX are chars, not bytes: decode the charset first
+            return Escapes.decode(new String(scratch, 0, len, charset));
+        }
+        if(!spec.keepEscapeSymbol){
+            n = 0;
+            for(int k = 0; k < len; k++){
+                if(scratch[k] != escape){
+                    scratch[n++] = scratch[k];
+                }
+            }
+        }
+        return new String(scratch, 0, n, charset);
+    }
+
+    /** @return size of the open file in bytes */
+    public long size(){
+        return fileSize;
+    }
+
+    /** Mapped windows are released by the garbage collector, as with any MappedByteBuffer */
+    @Override
+    public void close() throws IOException {
+        window = null;
+        if(channel != null){
+            channel.close();
+            channel = null;
+        }
+    }
+}
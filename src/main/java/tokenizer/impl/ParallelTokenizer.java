@@ -0,0 +1,266 @@
+package tokenizer.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**Tokenizer that splits large text into segments and scans them on a ForkJoinPool.
+ * Rules: {@link TokenizerSpec}. The result equals Tokenizer.parse().toList(), whatever the segment count.
+ *
+ * Segments are cut just after a delimiter, and each one is scanned on the guess that it
+ * starts outside any skip area with no pending token. The guess is then checked in order:
+ * segment k is kept if segment k-1 really ended in that state. Once a guess fails, the segments
+ * left that hold a quote (a skip symbol that is its own closer) are also scanned in parallel on
+ * the guess that they start inside it, as a cut through a quote flips every quote after it.
+ * A segment that neither guess fits is rescanned from the true state of k-1, but only until
+ * the true scan ends a token where the guessed scan also ended one in the state of a fresh
+ * scan; the guessed tokens from there on are kept. Text that is mostly one deeply nested skip
+ * area falls back to a serial scan.
+ *
+ * Instances hold no per-parse state and can be shared between threads.
+ */
+public class ParallelTokenizer {
+    private static final int DEFAULT_MIN_SEGMENT = 1 << 16;
+    private static final int SCAN = 0, SCAN_INSIDE = 1, MATERIALIZE = 2;// forEach() phases
+    private final TokenizerSpec spec;
+    private final ForkJoinPool pool;
+    private final int minSegment;
+
+    public ParallelTokenizer(TokenizerSpec spec){
+        this(spec, ForkJoinPool.commonPool(), DEFAULT_MIN_SEGMENT);
+    }
+    public ParallelTokenizer(TokenizerSpec spec, ForkJoinPool pool, int minSegment){
+        this.spec = spec;
+        this.pool = pool;
+        this.minSegment = Math.max(1, minSegment);
+    }
+
+    /*====Private parts===============================================================================================*/
+
+    /** Scanner that can be handed on to the next segment, output and all */
+    private class SegmentScanner extends TokenScanner {
+        private TokenSpans out;
+
+        private SegmentScanner(TokenSpans out){
+            super(spec);
+            this.out = out;
+        }
+
+        @Override
+        void emit(long start, long end) {
+            out.add((int)start, (int)end);
+        }
+    }
+
+    /** One slice of text with its own scanner and output */
+    private class Segment {
+        private final CharSequence text;
+        private final int from, to;
+        private TokenSpans out;
+        private SegmentScanner scanner;         // after scan: state at 'to', if the guess held
+        private int[] syncs;                    // offset, span count per token end in fresh-scan state
+        private int syncCount;
+        private SegmentScanner inside;          // after scanInside: state at 'to' if the segment starts in a quote;
+        private char quote;                     // null if it holds no quote symbol, else the first one
+        private final ArrayList<String> tokens;
+
+        private Segment(CharSequence text, int from, int to){
+            this.text = text;
+            this.from = from;
+            this.to = to;
+            this.tokens = new ArrayList<>();
+            this.out = new TokenSpans();
+            out.reset(text);
+            this.scanner = new SegmentScanner(out);
+            this.syncs = new int[16];
+        }
+
+        private void scan(){
+            scanner.reset(from);
+            int emitted = 0;
+            for(int i = from; i < to; i++){
+                scanner.step(text.charAt(i), i);
+                if(out.size() != emitted){
+                    emitted = out.size();
+                    if(scanner.matchesReset(i + 1)){
+                        this.sync(i + 1, emitted);
+                    }
+                }
+            }
+        }
+
+        private void sync(int offset, int spans){
+            if(syncCount * 2 == syncs.length){
+                syncs = Arrays.copyOf(syncs, syncs.length * 2);
+            }
+            syncs[syncCount * 2] = offset;
+            syncs[syncCount * 2 + 1] = spans;
+            syncCount++;
+        }
+
+        /** Second guess: the segment starts inside the quote its first quote symbol closes */
+        private void scanInside(){
+            int i = from;
+            while(i < to && !isQuote(text.charAt(i))){
+                i++;
+            }
+            if(i == to){
+                return;
+            }
+            this.quote = text.charAt(i);
+            TokenSpans spans = new TokenSpans();
+            spans.reset(text);
+            this.inside = new SegmentScanner(spans);
+            inside.resetInside(from, quote);
+            for(i = from; i < to; i++){
+                inside.step(text.charAt(i), i);
+            }
+        }
+
+        /** @return true if the second guess was right; it is then the scan of the segment */
+        private boolean takeInside(Segment before){
+            if(inside == null || !before.scanner.matchesInside(from, quote)){
+                return false;
+            }
+            long pending = before.scanner.pending();
+            this.out = inside.out;
+            if(out.size() > 0 && out.start(0) == from - 1){
+                out.setStart(0, (int)pending);
+            }
+            inside.setPending(from - 1, pending);
+            this.scanner = inside;
+            return true;
+        }
+
+        /** Guess was wrong: continue the true scan of the segment before, up to the first offset
+         *  where both scans are in fresh-scan state; the guessed scan is right from there on */
+        private void rescan(Segment before){
+            TokenSpans guessed = this.out;
+            this.out = new TokenSpans();
+            out.reset(text);
+            SegmentScanner guess = this.scanner;
+            this.scanner = before.scanner;
+            scanner.out = this.out;
+            int emitted = 0, s = 0;
+            for(int i = from; i < to; i++){
+                scanner.step(text.charAt(i), i);
+                if(out.size() == emitted){
+                    continue;
+                }
+                emitted = out.size();
+                while(s < syncCount && syncs[s * 2] <= i){
+                    s++;
+                }
+                if(s < syncCount && syncs[s * 2] == i + 1 && scanner.matchesReset(i + 1)){
+                    for(int k = syncs[s * 2 + 1]; k < guessed.size(); k++){
+                        out.add(guessed.start(k), guessed.end(k));
+                    }
+                    this.scanner = guess;
+                    scanner.out = this.out;
+                    return;
+                }
+            }
+        }
+
+        private void materialize(){
+            for(int k = 0; k < out.size(); k++){
+                tokens.add(out.get(k, spec));
+            }
+        }
+    }
+
+    /** @return true if symbol opens a skip area that it also closes */
+    private boolean isQuote(char symbol){
+        return (spec.classOf(symbol) & TokenizerSpec.OPENER) != 0 && spec.closers[symbol] == symbol;
+    }
+
+    /** @return index after the first unescaped delimiter at or past i, or len if none */
+    private int cutAfter(CharSequence text, int i, int len){
+        for(; i < len; i++){
+            if(spec.isDelimiter(text.charAt(i)) && (i == 0 || !spec.isEscape(text.charAt(i - 1)))){
+                return i + 1;
+            }
+        }
+        return len;
+    }
+
+    private List<Segment> split(CharSequence text){
+        int len = text.length();
+        int count = Math.min(pool.getParallelism() * 4, len / minSegment);
+        List<Segment> segments = new ArrayList<>(Math.max(1, count));
+        int from = 0;
+        for(int k = 1; k < count && from < len; k++){
+            int to = cutAfter(text, Math.max(from + 1, (int)((long)len * k / count)), len);
+            segments.add(new Segment(text, from, to));
+            from = to;
+        }
+        if(from < len || segments.isEmpty()){
+            segments.add(new Segment(text, from, len));
+        }
+        return segments;
+    }
+
+    private void forEach(List<Segment> segments, final int phase){
+        final List<RecursiveAction> tasks = new ArrayList<>(segments.size());
+        for(final Segment segment : segments){
+            tasks.add(new RecursiveAction() {
+                @Override
+                protected void compute() {
+                    if(phase == SCAN){
+                        segment.scan();
+                    }
+                    else if(phase == SCAN_INSIDE){
+                        segment.scanInside();
+                    }
+                    else{
+                        segment.materialize();
+                    }
+                }
+            });
+        }
+        pool.invoke(new RecursiveAction() {
+            @Override
+            protected void compute() {
+                invokeAll(tasks);
+            }
+        });
+    }
+
+    /*====Public parts================================================================================================*/
+
+    /** @return tokens, same as serial Tokenizer.parse().toList() */
+    public ArrayList<String> parse(CharSequence text){
+        List<Segment> segments = split(text);
+        forEach(segments, SCAN);
+
+        // check guesses in order; a wrong one is fixed by scanning on from the true state
+        boolean second = false;
+        for(int k = 1; k < segments.size(); k++){
+            Segment before = segments.get(k - 1), segment = segments.get(k);
+            if(before.scanner.matchesReset(segment.from)){
+                continue;
+            }
+            if(!second){
+                forEach(segments.subList(k, segments.size()), SCAN_INSIDE);
+                second = true;
+            }
+            if(!segment.takeInside(before)){
+                segment.rescan(before);
+            }
+        }
+        segments.get(segments.size() - 1).scanner.finish(text.length());
+
+        forEach(segments, MATERIALIZE);
+        int size = 0;
+        for(Segment segment : segments){
+            size += segment.tokens.size();
+        }
+        ArrayList<String> tokens = new ArrayList<>(size);
+        for(Segment segment : segments){
+            tokens.addAll(segment.tokens);
+        }
+        return tokens;
+    }
+}
@@ -0,0 +1,35 @@
+package tokenizer.impl;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/** JFR event for one parse that took longer than the threshold.
+ *  The threshold is the usual JFR setting, 1 ms unless a recording sets another:
+ *    jfr configure ... tokenizer.Parse#threshold=5ms
+ *  Created through TokenizerEvents */
+@Name("tokenizer.Parse")
+@Label("Tokenizer Parse")
+@Category("Tokenizer")
+@Description("One parse by Tokenizer, SimpleTok or WordTraitParser")
+@Threshold("1 ms")
+@StackTrace(false)
+public final class ParseEvent extends jdk.jfr.Event {
+    @Label("Engine")
+    String engine;
+
+    @Label("Chars")
+    long chars;
+
+    @Label("Tokens")
+    int tokens;
+
+    @Label("Max Skip Depth")
+    int maxSkipDepth;
+
+    @Label("Escapes")
+    int escapes;
+}
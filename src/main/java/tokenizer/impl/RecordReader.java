@@ -0,0 +1,266 @@
+package tokenizer.impl;
+
+import tokenizer.iface.ISymbolTable;
+import tokenizer.iface.ITokenSpans;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.CharBuffer;
+import java.util.Arrays;
+
+/**Reader of delimited records (CSV and the like), one pass over a Reader.
+ * A record ends at \n, \r or \r\n outside quotes; blank lines are skipped. A field in quotes may hold
+ * delimiters and newlines, and a doubled quote inside it stands for one quote. The escape symbol
+ * works as in Tokenizer: it is dropped and the char after it is taken as is, quoted or not.
+ * Each record is unquoted and unescaped into a row buffer that is reused for the next one;
+ * fields are spans into that buffer, so reading makes no String per field.
+ *
+ * Sample usage:
+ *   RecordReader records = new RecordReader(',', '"').setInput(reader);
+ *   while(records.next()){
+ *       long id = records.longValue(0);
+ *       int name = records.id(1, symbols);
+ *   }
+ */
+public class RecordReader implements ITokenSpans {
+    private static final int DEFAULT_CHUNK = 8192;
+    private static final char escape = TokenizerSpec.escape;
+    private static final int START = 0, FIELD = 1, QUOTED = 2, QUOTE = 3;
+    private final char delimiter, quote;
+    private final char[] chunk;
+    private Reader reader;
+    private int chunkLen, pos;
+    private boolean skipLF;                     // last record ended with \r, a \n right after belongs to it
+    private char[] row;                         // unquoted, unescaped chars of current record
+    private CharBuffer view;                    // row as CharSequence, for parsing and text()
+    private int[] bounds;                       // start0, end0, start1, end1...
+    private int size;
+    private long records;
+
+    public RecordReader(char delimiter, char quote){
+        this(delimiter, quote, DEFAULT_CHUNK);
+    }
+    public RecordReader(char delimiter, char quote, int chunkSize){
+        if(delimiter == quote || delimiter == escape || quote == escape){
+            throw new IllegalStateException("Delimiter, quote and escape symbol must differ");
+        }
+        this.delimiter = delimiter;
+        this.quote = quote;
+        this.chunk = new char[chunkSize];
+        this.row = new char[64];
+        this.view = CharBuffer.wrap(row);
+        this.bounds = new int[32];
+    }
+
+    /*====Private parts===============================================================================================*/
+
+    /** @return false at end of input */
+    private boolean fill() throws IOException {
+        int n;
+        do{
+            n = reader.read(chunk, 0, chunk.length);
+        } while(n == 0);
+        pos = 0;
+        chunkLen = Math.max(n, 0);
+        return n > 0;
+    }
+
+    private void grow(){
+        row = Arrays.copyOf(row, row.length * 2);
+        view = CharBuffer.wrap(row);
+    }
+
+    private void endField(int start, int end){
+        int k = size * 2;
+        if(k == bounds.length){
+            bounds = Arrays.copyOf(bounds, k * 2);
+        }
+        bounds[k] = start;
+        bounds[k + 1] = end;
+        size++;
+    }
+
+    private int check(int i){
+        if(i < 0 || i >= size){
+            throw new IndexOutOfBoundsException("field " + i + " of " + size);
+        }
+        return i;
+    }
+
+    /*====Public parts================================================================================================*/
+
+    /** Input is read as needed by next(); the caller closes it */
+    public RecordReader setInput(Reader reader){
+        this.reader = reader;
+        this.chunkLen = 0;
+        this.pos = 0;
+        this.skipLF = false;
+        this.size = 0;
+        this.records = 0;
+        return this;
+    }
+
+    /** Read the next record into the row buffer, replacing the current one
+     * @return false at end of input */
+    public boolean next() throws IOException {
+        int n = 0, fieldStart = 0, state = START;
+        boolean escaped = false;
+        size = 0;
+        while(true){
+            if(pos == chunkLen && !this.fill()){
+                if(state == QUOTED){
+                    throw new IllegalStateException("Unclosed quote in record " + (records + 1));
+                }
+                if(state == START && size == 0){
+                    return false;
+                }
+                break;// a trailing escape has nothing to escape and is dropped
+            }
+            char c = chunk[pos++];
+            if(skipLF){
+                skipLF = false;
+                if(c == '\n'){
+                    continue;
+                }
+            }
+            if(n == row.length){
+                this.grow();
+            }
+            if(escaped){
+                escaped = false;
+                row[n++] = c;
+                continue;
+            }
+            if(state == QUOTE){
+                if(c == quote){// doubled quote
+                    row[n++] = c;
+                    state = QUOTED;
+                    continue;
+                }
+                state = FIELD;// closing quote: go on as unquoted
+            }
+            if(state == QUOTED){
+                if(c == quote){
+                    state = QUOTE;
+                }
+                else if(c == escape){
+                    escaped = true;
+                }
+                else{
+                    row[n++] = c;
+                }
+                continue;
+            }
+            if(c == delimiter){
+                this.endField(fieldStart, n);
+                fieldStart = n;
+                state = START;
+            }
+            else if(c == '\n' || c == '\r'){
+                skipLF = (c == '\r');
+                if(state == START && size == 0){// blank line
+                    continue;
+                }
+                break;
+            }
+            else if(c == quote && state == START){
+                state = QUOTED;
+            }
+            else if(c == escape){
+                escaped = true;
+                state = FIELD;
+            }
+            else{
+                row[n++] = c;
+                state = FIELD;
+            }
+        }
+        this.endField(fieldStart, n);
+        records++;
+        return true;
+    }
+
+    /** @return number of records read since setInput */
+    public long records(){
+        return records;
+    }
+
+    /** @return field parsed as Integer.parseInt would, without a String */
+    public int intValue(int i){
+        return Integer.parseInt(view, this.start(i), this.end(i), 10);
+    }
+
+    /** @return field parsed as Long.parseLong would, without a String */
+    public long longValue(int i){
+        return Long.parseLong(view, this.start(i), this.end(i), 10);
+    }
+
+    /** @return symbol id of field; no String unless the field is new to the table */
+    public int id(int i, ISymbolTable symbols){
+        return symbols.id(row, this.start(i), this.end(i));
+    }
+
+    /** @return the row buffer of the current record; overwritten by next() */
+    @Override
+    public CharSequence text() {
+        return view;
+    }
+
+    /** @return number of fields in current record */
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public int start(int i) {
+        return bounds[this.check(i) * 2];
+    }
+
+    @Override
+    public int end(int i) {
+        return bounds[this.check(i) * 2 + 1];
+    }
+
+    @Override
+    public int length(int i) {
+        return this.end(i) - this.start(i);
+    }
+
+    @Override
+    public char charAt(int i, int index) {
+        if(index < 0 || index >= this.length(i)){
+            throw new IndexOutOfBoundsException("index " + index + " in field " + i);
+        }
+        return row[this.start(i) + index];
+    }
+
+    @Override
+    public boolean contentEquals(int i, CharSequence other) {
+        int start = this.start(i), len = this.end(i) - start;
+        if(other.length() != len){
+            return false;
+        }
+        for(int k = 0; k < len; k++){
+            if(row[start + k] != other.charAt(k)){
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int hash(int i) {
+        int h = 0;
+        for(int k = this.start(i), end = this.end(i); k < end; k++){
+            h = 31 * h + row[k];
+        }
+        return h;
+    }
+
+    /** @return field unquoted and unescaped, as a new String */
+    @Override
+    public String get(int i) {
+        return new String(row, this.start(i), this.length(i));
+    }
+}
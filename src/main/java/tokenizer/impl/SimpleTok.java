@@ -1,21 +1,42 @@
 package tokenizer.impl;
 
+import tokenizer.iface.ISymbolTable;
+import tokenizer.iface.ITokenCursor;
+import tokenizer.iface.ITokenSink;
+import tokenizer.iface.ITokenSpans;
 import tokenizer.iface.ITokenizer;
-import tokenizer.iface.IWhitespace;
 
+import java.nio.CharBuffer;
 import java.util.ArrayList;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**A simple string tokenizer.
- * Supports single delimiter
+ * Supports single delimiter, which may be any code point (a surrogate pair is matched as a whole)
  * Ignores adjacent delimiters to prevent empty elements
- * Option to limit number of splits */
+ * Option to limit number of splits
+ * Option to record token boundaries only, without creating Strings (parseSpans)
+ * Delimiters other than ' ' in String text are found with String.indexOf, a vectorized intrinsic.
+ * Char array text, and long String text with ' ' (chars below 33 delimit too), is searched by CharSearch:
+ * many chars per compare with the Vector API when the JVM runs with --add-modules jdk.incubator.vector,
+ * one at a time without it */
 public class SimpleTok implements ITokenizer {
     private static final char escape = '\\';
-    private IWhitespace whitespace;
+    private static final int WINDOW = 2048;     // chars of String text copied for CharSearch at a time
+    private static final int MIN_COPY = 64;     // chars; shorter String text is searched in place
+    private char whitespace;                // chars below this are delimiters too: 33 for ' ', else 0
+    private boolean unicodeWhitespace;      // with ' ': Unicode white space delimits too
+    private boolean unicode;                // unicodeWhitespace in effect
+    private int codePoint;                  // the delimiter; delimiter is its first char
+    private int width;                      // chars in delimiter, 2 for a surrogate pair
     private final int limit;
-    private String text;
+    private CharSequence text;
     private char delimiter;
     private String[] tokens;
+    private final TokenSpans spans;
 
     public SimpleTok(){
         this( ' ', 0x7FFFFFFF );
@@ -26,104 +47,347 @@ public class SimpleTok implements ITokenizer {
     public SimpleTok(char delimiter, int limit ){
         this.setDelimiter(delimiter);
         this.limit = limit;
+        this.spans = new TokenSpans();
     }
 
     @Override
     public ITokenizer setText(String text) {
+        return this.setText((CharSequence)text);
+    }
+
+    @Override
+    public ITokenizer setText(CharSequence text) {
         this.text = text;
         return this;
     }
 
+    @Override
+    public ITokenizer setText(char[] text, int offset, int length) {
+        this.text = CharBuffer.wrap(text, offset, length);
+        return this;
+    }
+
     @Override
     public ITokenizer setDelimiter(char... delimiter) {
-        this.delimiter = (delimiter.length == 0)? '\0' : delimiter[0];
-        if(this.delimiter == ' '){
-            whitespace = new IWhitespace() {
-                @Override
-                public boolean isWhitespace(char symbol) {
-                    return ((int)symbol) < 33;
-                }
-            };
-        }
-        else{
-            whitespace = new IWhitespace() {
-                @Override
-                public boolean isWhitespace(char symbol) {
-                    return false;
-                }
-            };
-        }
+        return this.setCodePointDelimiter((delimiter.length == 0)? '\0' : delimiter[0]);
+    }
+
+    /** Any code point may delimit; one above U+FFFF is found as its surrogate pair */
+    public SimpleTok setCodePointDelimiter(int codePoint) {
+        this.codePoint = codePoint;
+        this.width = Character.charCount(codePoint);
+        this.delimiter = Character.toChars(codePoint)[0];
+        this.whitespace = (this.delimiter == ' ')? (char)33 : '\0';
+        this.unicode = unicodeWhitespace && whitespace != 0;
+        return this;
+    }
+
+    /** With ' ' as delimiter, Unicode White_Space (NBSP, U+2028, U+3000...) delimits too, not only chars below 33 */
+    public SimpleTok unicodeWhitespace() {
+        this.unicodeWhitespace = true;
+        this.unicode = whitespace != 0;
         return this;
     }
 
     private boolean isEscape(char symbol){
         return symbol == escape;
     }
+    /** ASCII is decided by compares alone; Unicode tables are read only for chars at or above 0x80 */
     private boolean isDelimiter(char symbol){
-        return symbol == delimiter || whitespace.isWhitespace(symbol);
+        return symbol == delimiter || symbol < whitespace || (unicode && TokenizerSpec.isUnicodeSpace(symbol));
     }
 
-    @Override
-    public ITokenizer parse() {
-        // Rehearse to get size
-        int count = 0, len = text.length();
+    /** @return true if a delimiter starts with the unescaped delimiter char at i */
+    private boolean isDelimiter(CharSequence text, int i, int len){
+        return width == 1 || (i + 1 < len && Character.codePointAt(text, i) == codePoint);
+    }
+
+    /** @return text as an array for CharSearch: a heap CharBuffer as is, or a String that indexOf() cannot
+     *  search, copied a window at a time, if CharSearch compares many chars at a time; null for the scalar loop */
+    private ArrayText arrayText(CharSequence text){
+        if(text instanceof CharBuffer && ((CharBuffer)text).hasArray()){
+            return new ArrayText((CharBuffer)text);
+        }
+        if(text instanceof String && !(whitespace == 0 && delimiter != escape)
+                && text.length() >= MIN_COPY && CharSearch.INSTANCE.lanes() > 1){
+            return new ArrayText((String)text);
+        }
+        return null;
+    }
+
+    /** Escape state is clear after a delimiter, so every search can start fresh at i
+     * @return index of next unescaped delimiter at or after i, len if none */
+    private int nextDelimiter(CharSequence text, ArrayText array, int i, int len){
+        if(array != null){
+            return array.next(i, len);
+        }
+        if(whitespace == 0 && delimiter != escape && text instanceof String){
+            return nextDelimiter((String)text, i, len);
+        }
         boolean escaped = false;
-        int i, j = 0, k = 0;
-        for(i = 0; i < len; i++){
-            if(isEscape(text.charAt(i))){
+        for(; i < len; i++){
+            char curr = text.charAt(i);
+            if(isEscape(curr)){
                 escaped = true;
             }
             else if(escaped){
                 escaped = false;
             }
-            else if(isDelimiter(text.charAt(i))){
-                if( i != j ){
-                    count++;
-                    // Limit size, if limit passed
-                    if( count == limit ){
-                        i = j;
-                        break;
-                    }
-                }
-                j=i+1;
+            else if(isDelimiter(curr) && isDelimiter(text, i, len)){
+                return i;
             }
         }
-        if( i != j ){
-            count++;
+        return len;
+    }
+
+    /** A run of escape symbols escapes the next char, so a delimiter is escaped
+     *  exactly when an escape symbol comes right before it */
+    private int nextDelimiter(String text, int i, int len){
+        int d = text.indexOf(codePoint, i);
+        while(d > i && isEscape(text.charAt(d - 1))){
+            d = text.indexOf(codePoint, d + 1);
         }
-        // Set array and run again to populate
-        tokens = new String[count];
-        j = 0;
-        escaped = false;
-        for(i = 0; i < len; i++){
-            if(isEscape(text.charAt(i))){
-                text = text.substring(0, i) + text.substring(i + 1);
-                System.out.println("new text:" + text);
-                len--;
-                i--;
-                escaped = true;
-            }
-            else if(escaped){
-                escaped = false;
+        return (d == -1)? len : d;
+    }
+
+    /** Text read through a char array, so CharSearch can compare many chars at a time */
+    private final class ArrayText {
+        private final CharSequence text;
+        private final String string;            // copied a window at a time; null for a CharBuffer
+        private final char[] chars;
+        private int shift, end;                 // text char k is chars[k + shift], for k below end
+
+        private ArrayText(CharBuffer text){
+            this.text = text;
+            this.string = null;
+            this.chars = text.array();
+            this.shift = text.arrayOffset() + text.position();
+            this.end = text.length();
+        }
+        private ArrayText(String text){
+            this.text = text;
+            this.string = text;
+            this.chars = new char[Math.min(WINDOW, text.length())];
+            this.end = 0;
+        }
+
+        /** @return false if k is past the text, else the window now starts at k */
+        private boolean load(int k){
+            if(string == null || k >= string.length()){
+                return false;
             }
-            else if(isDelimiter(text.charAt(i))){
-                if( i != j ){
-                    if( k >= limit-1){
-                        break;
-                    }
-                    tokens[k] = text.substring(j, i);
-                    k++;
+            int n = Math.min(chars.length, string.length() - k);
+            string.getChars(k, k + n, chars, 0);
+            shift = -k;
+            end = k + n;
+            return true;
+        }
 
+        /** CharSearch stops at the delimiter, escape symbols, chars below 33 with ' ', and chars at or
+         *  above 0x80 with unicodeWhitespace; only those are judged one at a time. Calls come in text order
+         * @return index of next unescaped delimiter at or after i, len if none */
+        private int next(int i, int len){
+            int k = i;
+            while(k < end || this.load(k)){
+                k = CharSearch.INSTANCE.find(chars, k + shift, end + shift, delimiter, escape, whitespace,
+                        unicode? 0x80 : 0x10000) - shift;
+                if(k == end){
+                    continue;
+                }
+                char curr = chars[k + shift];
+                if(isEscape(curr)){// a run of escape symbols escapes the next char
+                    do{
+                        k++;
+                    } while((k < end || this.load(k)) && isEscape(chars[k + shift]));
+                    k++;
+                }
+                else if(isDelimiter(curr) && isDelimiter(text, k, len)){
+                    return k;
                 }
-                j=i+1;
+                else{
+                    k++;
+                }
+            }
+            return len;
+        }
+    }
+
+    private boolean onlyEscapes(CharSequence text, int j, int i){
+        for(; j < i; j++){
+            if(!isEscape(text.charAt(j))){
+                return false;
             }
         }
-        if( i != j ){
-            tokens[k] = text.substring(j);
+        return true;
+    }
+
+    @Override
+    public ITokenizer parse() {
+        scan(text, spans);
+        tokens = new String[spans.size()];
+        for(int k = 0; k < tokens.length; k++){
+            tokens[k] = spans.getUnescaped(k);
         }
         return this;
     }
 
+    @Override
+    public ITokenizer parseSpans() {
+        tokens = null;
+        scan(text, spans);
+        return this;
+    }
+
+    /** Reads only delimiter and limit, so concurrent calls with their own spans are safe.
+     *  Every eager parse comes through here and is recorded; flight recorder events report no skip
+     *  depth or escapes: SimpleTok has no skip areas, and finds delimiters without visiting every char */
+    private void scan(CharSequence text, TokenSpans spans){
+        ParseEvent event = TokenizerEvents.begin();
+        spans.reset(text);
+        ArrayText array = this.arrayText(text);
+        int i, j = 0, len = text.length();
+        while((i = nextDelimiter(text, array, j, len)) != len){
+            if( i != j ){
+                // Limit size, if limit passed: last element gets the rest of the text
+                if( spans.size() >= limit-1){
+                    break;
+                }
+                spans.add(j, i);
+            }
+            j=i+width;
+        }
+        if( len != j && !onlyEscapes(text, j, len) ){
+            spans.add(j, len);
+        }
+        TokenizerEvents.end(event, "SimpleTok", len, spans.size(), 0, 0);
+    }
+
+    @Override
+    public ArrayList<String> tokenize(CharSequence text) {
+        TokenSpans out = (TokenSpans)this.tokenizeSpans(text);
+        ArrayList<String> list = new ArrayList<>(out.size());
+        for(int k = 0; k < out.size(); k++){
+            list.add(out.getUnescaped(k));
+        }
+        return list;
+    }
+
+    @Override
+    public ITokenSpans tokenizeSpans(CharSequence text) {
+        TokenSpans out = new TokenSpans();
+        scan(text, out);
+        return out;
+    }
+
+    /** Same loop as scan(); past the limit the rest is one token, with no delimiter calls */
+    @Override
+    public void tokenize(CharSequence text, ITokenSink sink) {
+        ParseEvent event = TokenizerEvents.begin();
+        CharBuffer view = null;
+        ArrayText array = this.arrayText(text);
+        int i, j = 0, count = 0, len = text.length();
+        while((i = nextDelimiter(text, array, j, len)) != len){
+            if( i != j ){
+                if( count >= limit-1){
+                    break;
+                }
+                view = push(text, j, i, view, sink);
+                count++;
+            }
+            if( width == 1 ){
+                sink.delimiter(text.charAt(i), i);
+            }
+            else{
+                sink.delimiter(text, i, i + width);
+            }
+            j=i+width;
+        }
+        if( len != j && !onlyEscapes(text, j, len) ){
+            push(text, j, len, view, sink);
+            count++;
+        }
+        TokenizerEvents.end(event, "SimpleTok", len, count, 0, 0);
+    }
+
+    /** @param view reused flyweight over a scratch array, null until a token needs it
+     * @return view for the next token, grown if needed */
+    private static CharBuffer push(CharSequence text, int start, int end, CharBuffer view, ITokenSink sink){
+        if(!Escapes.any(text, start, end)){
+            sink.token(text, start, end);
+            return view;
+        }
+        if(view == null || view.capacity() < end - start){
+            view = CharBuffer.wrap(new char[Math.max(end - start, 16)]);
+        }
+        sink.token(view, 0, Escapes.copy(text, start, end, view.array(), false));
+        return view;
+    }
+
+    @Override
+    public int[] tokenizeIds(CharSequence text, ISymbolTable symbols) {
+        TokenSpans out = (TokenSpans)this.tokenizeSpans(text);
+        int[] ids = new int[out.size()];
+        for(int k = 0; k < ids.length; k++){
+            ids[k] = out.idUnescaped(k, symbols);
+        }
+        return ids;
+    }
+
+    /** The split limit counts from the start, so the stream does not split: parallel()
+     *  streams take tokens in batches from one cursor */
+    @Override
+    public Stream<String> stream(CharSequence text) {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(cursor(text),
+                Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+
+    @Override
+    public IntStream idStream(CharSequence text, ISymbolTable symbols) {
+        return StreamSupport.intStream(Spliterators.spliteratorUnknownSize(((TokenCursor)cursor(text)).ids(symbols),
+                Spliterator.ORDERED), false);
+    }
+
+    /** Same loop as scan(), stopping at each token */
+    @Override
+    public ITokenCursor cursor(final CharSequence text) {
+        return new TokenCursor(text) {
+            private final ArrayText array = arrayText(text);
+            private int j, count;
+            private boolean done;
+
+            @Override
+            void advance() {
+                int len = text.length();
+                while(ready.size() == 0 && !done){
+                    int i = nextDelimiter(text, array, j, len);
+                    if( i != len && (i == j || count < limit-1) ){
+                        if( i != j ){
+                            ready.add(j, i);
+                            count++;
+                        }
+                        j=i+width;
+                    }
+                    else{// last element gets the rest of the text
+                        done = true;
+                        if( len != j && !onlyEscapes(text, j, len) ){
+                            ready.add(j, len);
+                        }
+                    }
+                }
+            }
+
+            @Override
+            String get(int k) {
+                return ready.getUnescaped(k);
+            }
+
+            @Override
+            int id(int k, ISymbolTable symbols) {
+                return ready.idUnescaped(k, symbols);
+            }
+        };
+    }
+
     @Override
     public ArrayList<String> toList() {
         ArrayList<String> out = new ArrayList<>(tokens.length);
@@ -138,6 +402,11 @@ public class SimpleTok implements ITokenizer {
         return tokens;
     }
 
+    @Override
+    public ITokenSpans toSpans() {
+        return spans;
+    }
+
     @Override
     public int[] indents() {
         throw new IllegalStateException("SimpleTok does not implement indents()");
@@ -0,0 +1,114 @@
+package tokenizer.impl;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayDeque;
+
+/**Tokenizer for input too big to hold as one String.
+ * Reads a Reader or channel in fixed-size chunks and hands out tokens one at a time.
+ * Rules: {@link TokenizerSpec}, applied across chunks. Skip areas, escapes and tokens
+ * may cross chunk boundaries: the scan state lives on between chunks, and the start of an
+ * unfinished token is carried over. Memory is one chunk plus the longest token,
+ * however long the input is (an unclosed skip area is one long token).
+ *
+ * Sample usage:
+ *   StreamingTokenizer tokenizer = new StreamingTokenizer(spec).setInput(reader);
+ *   for(String tok = tokenizer.next(); tok != null; tok = tokenizer.next()){ ... }
+ */
+public class StreamingTokenizer {
+    private static final int DEFAULT_CHUNK = 8192;
+    private final TokenScanner scanner;
+    private final char[] chunk;
+    private final TokenCarry carry;             // chunk offsets and the unfinished token from earlier chunks
+    private final ArrayDeque<String> ready;     // found in current step, not yet handed out
+    private Reader reader;
+    private int chunkLen, pos;
+    private boolean done;
+    private ParseEvent event;                   // the whole input is one parse for the flight recorder
+    private int tokens;
+
+    public StreamingTokenizer(TokenizerSpec spec){
+        this(spec, DEFAULT_CHUNK);
+    }
+    public StreamingTokenizer(TokenizerSpec spec, int chunkSize){
+        this.chunk = new char[chunkSize];
+        this.carry = new TokenCarry(spec);
+        this.ready = new ArrayDeque<>(4);
+        this.scanner = new TokenScanner(spec) {
+            @Override
+            void emit(long start, long end) {
+                ready.add(carry.materialize(start, end));
+                tokens++;
+            }
+        };
+    }
+
+    /*====Private parts===============================================================================================*/
+
+    /** Save the unfinished token, then read the next chunk over the current one */
+    private void refill() throws IOException {
+        carry.advance(scanner.retained());
+        chunkLen = 0;
+        pos = 0;
+        int n;
+        do{
+            n = reader.read(chunk, 0, chunk.length);
+        } while(n == 0);
+        if(n == -1){
+            done = true;
+            scanner.finish(carry.chunkBase());
+            TokenizerEvents.end(event, "StreamingTokenizer", carry.chunkBase(), tokens, scanner.maxDepth(), scanner.escapes());
+            event = null;
+        }
+        else{
+            chunkLen = n;
+            carry.next(chunk, n);
+        }
+    }
+
+    /*====Public parts================================================================================================*/
+
+    /** Input is read as needed by next(); the caller closes it */
+    public StreamingTokenizer setInput(Reader reader){
+        this.reader = reader;
+        this.carry.reset();
+        this.ready.clear();
+        this.chunkLen = 0;
+        this.pos = 0;
+        this.done = false;
+        this.tokens = 0;
+        this.event = TokenizerEvents.begin();
+        scanner.reset(0);
+        return this;
+    }
+
+    /** Bytes are decoded as they are read; a char split across reads is handled by the decoder */
+    public StreamingTokenizer setInput(ReadableByteChannel channel, Charset charset){
+        return this.setInput(Channels.newReader(channel, charset.newDecoder(), -1));
+    }
+
+    /** @return next token, or null at end of input */
+    public String next() throws IOException {
+        while(ready.isEmpty()){
+            if(pos == chunkLen){
+                if(done){
+                    return null;
+                }
+                this.refill();
+            }
+            else{
+                scanner.step(chunk[pos], carry.chunkBase() + pos);
+                pos++;
+            }
+        }
+        return ready.poll();
+    }
+
+    /** @return number of chars read from input so far */
+    public long charsRead(){
+        return carry.chunkBase() + chunkLen;
+    }
+}
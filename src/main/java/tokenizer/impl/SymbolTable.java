@@ -0,0 +1,209 @@
+package tokenizer.impl;
+
+import tokenizer.iface.ISymbolTable;
+
+import java.util.Arrays;
+
+/**Open-addressing symbol table: token chars to int ids.
+ * Lookups of known tokens take no lock and allocate nothing; a new token is added under
+ * the table lock, creating its one canonical String. Slots hold immutable entries, so a
+ * reader racing an insert sees either nothing (and retries under the lock) or a whole entry.
+ * Growing builds a new slot array and publishes it in one volatile write.
+ *
+ * Sample usage:
+ *   ISymbolTable symbols = new SymbolTable();
+ *   int[] ids = tokenizer.tokenizeIds(line, symbols);
+ *   String first = symbols.symbol(ids[0]);
+ */
+public class SymbolTable implements ISymbolTable {
+    private volatile Entry[] slots;             // length is a power of 2, at most half full
+    private volatile String[] symbols;          // by id
+    private int size;                           // guarded by this
+
+    public SymbolTable(){
+        this(64);
+    }
+    public SymbolTable(int expectedSize){
+        int capacity = Integer.highestOneBit(Math.max(4, expectedSize) * 2 - 1) * 2;
+        this.slots = new Entry[capacity];
+        this.symbols = new String[capacity / 2];
+    }
+
+    /*====Private parts===============================================================================================*/
+
+    private static final class Entry {
+        final String symbol;
+        final int hash;
+        final int id;
+
+        Entry(String symbol, int hash, int id){
+            this.symbol = symbol;
+            this.hash = hash;
+            this.id = id;
+        }
+    }
+
+    /** Same value as String.hashCode() of the range */
+    private static int hash(CharSequence text, int start, int end){
+        int h = 0;
+        for(int k = start; k < end; k++){
+            h = 31 * h + text.charAt(k);
+        }
+        return h;
+    }
+
+    private static int hash(char[] text, int start, int end){
+        int h = 0;
+        for(int k = start; k < end; k++){
+            h = 31 * h + text[k];
+        }
+        return h;
+    }
+
+    private static int slot(int hash, int mask){
+        return (hash ^ (hash >>> 16)) & mask;
+    }
+
+    private static boolean matches(Entry entry, int hash, CharSequence text, int start, int end){
+        if(entry.hash != hash || entry.symbol.length() != end - start){
+            return false;
+        }
+        for(int k = start; k < end; k++){
+            if(entry.symbol.charAt(k - start) != text.charAt(k)){
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean matches(Entry entry, int hash, char[] text, int start, int end){
+        if(entry.hash != hash || entry.symbol.length() != end - start){
+            return false;
+        }
+        for(int k = start; k < end; k++){
+            if(entry.symbol.charAt(k - start) != text[k]){
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int find(CharSequence text, int start, int end, int hash){
+        Entry[] table = slots;
+        int mask = table.length - 1;
+        for(int s = slot(hash, mask); table[s] != null; s = (s + 1) & mask){
+            if(matches(table[s], hash, text, start, end)){
+                return table[s].id;
+            }
+        }
+        return -1;
+    }
+
+    private int find(char[] text, int start, int end, int hash){
+        Entry[] table = slots;
+        int mask = table.length - 1;
+        for(int s = slot(hash, mask); table[s] != null; s = (s + 1) & mask){
+            if(matches(table[s], hash, text, start, end)){
+                return table[s].id;
+            }
+        }
+        return -1;
+    }
+
+    /** Caller holds the lock and has checked symbol is new */
+    private int add(String symbol, int hash){
+        if((size + 1) * 2 > slots.length){
+            this.grow();
+        }
+        int id = size;
+        if(id == symbols.length){
+            symbols = Arrays.copyOf(symbols, id * 2);
+        }
+        symbols[id] = symbol;
+        Entry[] table = slots;
+        int mask = table.length - 1;
+        int s = slot(hash, mask);
+        while(table[s] != null){
+            s = (s + 1) & mask;
+        }
+        table[s] = new Entry(symbol, hash, id);
+        size++;
+        return id;
+    }
+
+    private void grow(){
+        Entry[] table = new Entry[slots.length * 2];
+        int mask = table.length - 1;
+        for(Entry entry : slots){
+            if(entry != null){
+                int s = slot(entry.hash, mask);
+                while(table[s] != null){
+                    s = (s + 1) & mask;
+                }
+                table[s] = entry;
+            }
+        }
+        slots = table;
+    }
+
+    /*====Public parts================================================================================================*/
+
+    @Override
+    public int id(CharSequence text, int start, int end) {
+        int hash = hash(text, start, end);
+        int id = this.find(text, start, end, hash);
+        if(id >= 0){
+            return id;
+        }
+        synchronized(this){// check again: another thread may have added it, or grown the table
+            id = this.find(text, start, end, hash);
+            return (id >= 0)? id : this.add(text.subSequence(start, end).toString(), hash);
+        }
+    }
+
+    @Override
+    public int id(char[] text, int start, int end) {
+        int hash = hash(text, start, end);
+        int id = this.find(text, start, end, hash);
+        if(id >= 0){
+            return id;
+        }
+        synchronized(this){
+            id = this.find(text, start, end, hash);
+            return (id >= 0)? id : this.add(new String(text, start, end - start), hash);
+        }
+    }
+
+    @Override
+    public int find(CharSequence text, int start, int end) {
+        int hash = hash(text, start, end);
+        int id = this.find(text, start, end, hash);
+        if(id >= 0){
+            return id;
+        }
+        synchronized(this){
+            return this.find(text, start, end, hash);
+        }
+    }
+
+    @Override
+    public String symbol(int id) {
+        String[] known = symbols;
+        if(id >= 0 && id < known.length && known[id] != null){
+            return known[id];
+        }
+        synchronized(this){// added by another thread, not yet visible without the lock
+            if(id < 0 || id >= size){
+                throw new IndexOutOfBoundsException("symbol " + id + " of " + size);
+            }
+            return symbols[id];
+        }
+    }
+
+    @Override
+    public int size() {
+        synchronized(this){
+            return size;
+        }
+    }
+}
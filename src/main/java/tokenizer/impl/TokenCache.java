@@ -0,0 +1,164 @@
+package tokenizer.impl;
+
+import tokenizer.iface.ITokenizer;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**Bounded cache of tokenize() results for inputs that repeat: config keys, command templates...
+ * A hit costs one hash lookup in one segment; results are immutable lists shared by all callers.
+ * Size is counted in chars (input plus tokens), split evenly over segments, each its own LRU
+ * under its own lock, so threads on different inputs rarely wait for each other.
+ * A miss tokenizes outside the lock; two threads missing on the same input may both tokenize it.
+ * Inputs too big for a segment are tokenized but not kept.
+ *
+ * Sample usage:
+ *   TokenCache cache = new TokenCache(Tokenizer.builder().delimiters(' ').build(), 1 << 20);
+ *   List<String> tokens = cache.tokenize(line);
+ *   System.out.println(cache.hitRate());
+ */
+public class TokenCache {
+    private static final int ENTRY_OVERHEAD = 16;      // per entry and per token, in chars
+    private final ITokenizer tokenizer;
+    private final Segment[] segments;
+    private final long segmentWeight;
+    private final LongAdder hits, misses, evictions;
+
+    /** @param tokenizer thread-safe tokenize() is all that is used
+     * @param maxWeight chars kept at most, inputs and tokens together */
+    public TokenCache(ITokenizer tokenizer, long maxWeight){
+        this(tokenizer, maxWeight, 16);
+    }
+    public TokenCache(ITokenizer tokenizer, long maxWeight, int segmentCount){
+        if(maxWeight < segmentCount || segmentCount < 1){
+            throw new IllegalStateException("Cache too small: " + maxWeight + " chars over " + segmentCount + " segments");
+        }
+        this.tokenizer = tokenizer;
+        this.segments = new Segment[Integer.highestOneBit(segmentCount)];
+        for(int i = 0; i < segments.length; i++){
+            segments[i] = new Segment();
+        }
+        this.segmentWeight = maxWeight / segments.length;
+        this.hits = new LongAdder();
+        this.misses = new LongAdder();
+        this.evictions = new LongAdder();
+    }
+
+    /*====Private parts===============================================================================================*/
+
+    /** Access-ordered map: get() moves an entry to the young end, eviction takes the old end */
+    private static final class Segment {
+        private final LinkedHashMap<String, List<String>> entries = new LinkedHashMap<>(16, 0.75f, true);
+        private long weight;
+    }
+
+    private static long weigh(String text, List<String> tokens){
+        long weight = text.length() + ENTRY_OVERHEAD;
+        for(String token : tokens){
+            weight += token.length() + ENTRY_OVERHEAD;
+        }
+        return weight;
+    }
+
+    private Segment segmentOf(String text){
+        int h = text.hashCode();
+        return segments[(h ^ (h >>> 16)) & (segments.length - 1)];
+    }
+
+    /*====Public parts================================================================================================*/
+
+    /** @return tokens of text as tokenizer.tokenize(text) gives them; unmodifiable, possibly shared */
+    public List<String> tokenize(CharSequence text){
+        String key = text.toString();
+        Segment segment = this.segmentOf(key);
+        List<String> tokens;
+        synchronized(segment){
+            tokens = segment.entries.get(key);
+        }
+        if(tokens != null){
+            hits.increment();
+            return tokens;
+        }
+        misses.increment();
+        tokens = Collections.unmodifiableList(tokenizer.tokenize(key));
+        long weight = weigh(key, tokens);
+        if(weight > segmentWeight){
+            return tokens;
+        }
+        synchronized(segment){
+            List<String> old = segment.entries.put(key, tokens);
+            if(old != null){// another thread got here first
+                segment.weight -= weigh(key, old);
+            }
+            segment.weight += weight;
+            Iterator<Map.Entry<String, List<String>>> eldest = segment.entries.entrySet().iterator();
+            while(segment.weight > segmentWeight){
+                Map.Entry<String, List<String>> entry = eldest.next();
+                segment.weight -= weigh(entry.getKey(), entry.getValue());
+                eldest.remove();
+                evictions.increment();
+            }
+        }
+        return tokens;
+    }
+
+    /** Drop every entry; statistics are kept */
+    public void clear(){
+        for(Segment segment : segments){
+            synchronized(segment){
+                segment.entries.clear();
+                segment.weight = 0;
+            }
+        }
+    }
+
+    /** @return number of inputs kept */
+    public int size(){
+        int size = 0;
+        for(Segment segment : segments){
+            synchronized(segment){
+                size += segment.entries.size();
+            }
+        }
+        return size;
+    }
+
+    /** @return chars kept, inputs and tokens with per-entry overhead */
+    public long weight(){
+        long weight = 0;
+        for(Segment segment : segments){
+            synchronized(segment){
+                weight += segment.weight;
+            }
+        }
+        return weight;
+    }
+
+    public long hits(){
+        return hits.sum();
+    }
+
+    public long misses(){
+        return misses.sum();
+    }
+
+    public long evictions(){
+        return evictions.sum();
+    }
+
+    /** @return hits over lookups, 0 before any lookup */
+    public double hitRate(){
+        long h = hits.sum(), lookups = h + misses.sum();
+        return (lookups == 0)? 0 : (double)h / lookups;
+    }
+
+    @Override
+    public String toString(){
+        return String.format("%d entries, %d chars, %d hits, %d misses, %d evictions, hit rate %.3f",
+                this.size(), this.weight(), this.hits(), this.misses(), this.evictions(), this.hitRate());
+    }
+}
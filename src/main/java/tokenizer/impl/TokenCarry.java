@@ -0,0 +1,107 @@
+package tokenizer.impl;
+
+/** Current chunk plus the text earlier chunks left unfinished, for engines that scan input in pieces.
+ *  Offsets are those of the whole input, as the scanner sees them. When a chunk is used up, its text
+ *  from TokenScanner.retained() on is kept, so a token or a multi-char delimiter crossing chunks
+ *  can still be cut out by materialize(). */
+final class TokenCarry {
+    private final TokenizerSpec spec;
+    private final StringBuilder carry;          // input [carryBase, chunkBase) left by earlier chunks
+    private final StringBuilder token;          // reused to assemble raw tokens
+    private char[] scratch;                     // reused to remove escape symbols
+    private char[] chars;                       // current chunk as an array,
+    private CharSequence text;                  // or as text; both null once used up
+    private int length;
+    private long carryBase, chunkBase;          // offsets of carry[0] and of the current chunk
+
+    TokenCarry(TokenizerSpec spec){
+        this.spec = spec;
+        this.carry = new StringBuilder();
+        this.token = new StringBuilder();
+        this.scratch = new char[0];
+    }
+
+    /*====Private parts===============================================================================================*/
+
+    private void append(StringBuilder out, int from, int to){
+        if(chars != null){
+            out.append(chars, from, to - from);
+        }
+        else if(text != null){
+            out.append(text, from, to);
+        }
+    }
+
+    /*====Chunks======================================================================================================*/
+
+    /** Back to offset 0 with nothing carried */
+    void reset(){
+        carry.setLength(0);
+        chars = null;
+        text = null;
+        length = 0;
+        carryBase = 0;
+        chunkBase = 0;
+    }
+
+    /** @param chunk next chunk, starting where the last one ended; not copied, so keep it until advance() */
+    void next(char[] chunk, int length){
+        this.chars = chunk;
+        this.text = null;
+        this.length = length;
+    }
+
+    void next(CharSequence chunk){
+        this.chars = null;
+        this.text = chunk;
+        this.length = chunk.length();
+    }
+
+    /** Current chunk used up: keep the input from offset keep on, which may reach back into the carry */
+    void advance(long keep){
+        if(keep < chunkBase){// carry already holds [keep, chunkBase)
+            carry.delete(0, (int)(keep - carryBase));
+            this.append(carry, 0, length);
+        }
+        else{
+            carry.setLength(0);
+            if(keep < chunkBase + length){
+                this.append(carry, (int)(keep - chunkBase), length);
+            }
+        }
+        carryBase = keep;
+        chunkBase += length;
+        chars = null;
+        text = null;
+        length = 0;
+    }
+
+    /** @return offset of the current chunk, or of the end of input read so far once it is used up */
+    long chunkBase(){
+        return chunkBase;
+    }
+
+    /** A token starting before the current chunk is carried text, up to the head of the chunk;
+     *  a multi-char delimiter crossing chunks may end a token inside the carry
+     * @return token as Tokenizer.parse() returns it */
+    String materialize(long start, long end){
+        token.setLength(0);
+        int from = 0;
+        if(start < chunkBase){
+            token.append(carry, (int)(start - carryBase), (int)(Math.min(end, chunkBase) - carryBase));
+        }
+        else{
+            from = (int)(start - chunkBase);
+        }
+        if(end > chunkBase){
+            this.append(token, from, (int)(end - chunkBase));
+        }
+        if(spec.keepEscapeSymbol || !Escapes.any(token, 0, token.length())){
+            return token.toString();
+        }
+        if(scratch.length < token.length()){
+            scratch = new char[Math.max(token.length(), scratch.length * 2)];
+        }
+        return new String(scratch, 0, Escapes.copy(token, 0, token.length(), scratch, spec.decodeEscapes));
+    }
+}
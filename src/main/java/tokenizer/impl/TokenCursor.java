@@ -0,0 +1,74 @@
+package tokenizer.impl;
+
+import tokenizer.iface.ISymbolTable;
+import tokenizer.iface.ITokenCursor;
+
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+
+/** Cursor base for the engines: each one scans on in advance() until it has a token,
+ *  and says how a token becomes a String in get() */
+abstract class TokenCursor implements ITokenCursor {
+    final TokenSpans ready;                 // found by the last advance(), not yet handed out
+    private int head;
+
+    TokenCursor(CharSequence text){
+        this.ready = new TokenSpans(2);
+        ready.reset(text);
+    }
+
+    /** Scan on until ready holds a token or the text ends */
+    abstract void advance();
+
+    /** @return token k of ready, as the engine's parse() returns it */
+    abstract String get(int k);
+
+    /** @return symbol id of token k of ready */
+    abstract int id(int k, ISymbolTable symbols);
+
+    @Override
+    public boolean hasNext() {
+        if(head == ready.size()){
+            head = 0;
+            ready.reset(ready.text());
+            this.advance();
+        }
+        return head < ready.size();
+    }
+
+    @Override
+    public String next() {
+        if(!this.hasNext()){
+            throw new NoSuchElementException();
+        }
+        return this.get(head++);
+    }
+
+    /** @return ids of the tokens still to come, taken lazily */
+    PrimitiveIterator.OfInt ids(final ISymbolTable symbols){
+        return new PrimitiveIterator.OfInt() {
+            @Override
+            public boolean hasNext() {
+                return TokenCursor.this.hasNext();
+            }
+
+            @Override
+            public int nextInt() {
+                if(!this.hasNext()){
+                    throw new NoSuchElementException();
+                }
+                return id(head++, symbols);
+            }
+        };
+    }
+
+    @Override
+    public int skip(int n) {
+        int k = 0;
+        while(k < n && this.hasNext()){
+            head++;
+            k++;
+        }
+        return k;
+    }
+}
@@ -0,0 +1,233 @@
+package tokenizer.impl;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**Flow stage from text to tokens, with backpressure both ways.
+ * Rules: {@link TokenizerSpec}, applied across items. Text is scanned only while the
+ * subscriber has demand, and the next text item is requested from upstream (one at a time)
+ * only when the current one is used up; a token crossing items is carried over, as in
+ * StreamingTokenizer. At most the one or two tokens found by a single char wait for demand.
+ * Chunk mode joins items into one text; line mode tokenizes every item on its own.
+ * Each token goes through mapper (WORD_TRAIT.classifier(), for one); a null result is dropped.
+ * An exception from the scan or the mapper cancels upstream and is passed to onError.
+ * One subscriber; signals to it are serialized by a drain loop, whichever thread calls in.
+ *
+ * Sample usage:
+ *   TokenProcessor<String> tokens = TokenProcessor.of(spec, true);
+ *   publisher.subscribe(tokens);
+ *   tokens.subscribe(subscriber);
+ */
+public class TokenProcessor<T> implements Flow.Processor<CharSequence, T> {
+    private final boolean lines;
+    private final Function<String, T> mapper;
+    private final TokenScanner scanner;
+    private final ArrayDeque<T> ready;          // mapped tokens waiting for demand
+    private final ConcurrentLinkedQueue<CharSequence> inbox;
+    private final AtomicLong demand;
+    private final AtomicInteger wip;            // drain loop entries; only one thread drains
+    private final TokenCarry carry;             // item offsets and the unfinished token from earlier items
+    private volatile Flow.Subscription upstream;
+    private volatile Flow.Subscriber<? super T> downstream;
+    private volatile boolean upstreamDone, cancelled;
+    private volatile Throwable error;
+    private CharSequence chunk;                 // item being scanned, touched by the drain loop only
+    private int pos;
+    private boolean requested, finished, terminated;
+
+    public TokenProcessor(TokenizerSpec spec, boolean lines, Function<String, T> mapper){
+        this.lines = lines;
+        this.mapper = mapper;
+        this.ready = new ArrayDeque<>(4);
+        this.inbox = new ConcurrentLinkedQueue<>();
+        this.demand = new AtomicLong();
+        this.wip = new AtomicInteger();
+        this.carry = new TokenCarry(spec);
+        this.scanner = new TokenScanner(spec) {
+            @Override
+            void emit(long start, long end) {
+                T item = TokenProcessor.this.mapper.apply(carry.materialize(start, end));
+                if(item != null){
+                    ready.add(item);
+                }
+            }
+        };
+        scanner.reset(0);
+    }
+
+    /** @param lines true to tokenize every item on its own, false to join items into one text
+     * @return processor publishing the tokens themselves */
+    public static TokenProcessor<String> of(TokenizerSpec spec, boolean lines){
+        return new TokenProcessor<>(spec, lines, Function.<String>identity());
+    }
+
+    /*====Private parts===============================================================================================*/
+
+    /** Item used up: end its tokens in line mode, else save the unfinished one */
+    private void endChunk(){
+        long end = carry.chunkBase() + chunk.length();
+        if(lines){
+            scanner.finish(end);
+            scanner.reset(end);
+        }
+        carry.advance(lines? end : scanner.retained());
+        chunk = null;
+    }
+
+    /** A scan or mapper failure ends the stream: upstream is cancelled and the error goes downstream */
+    private void fail(RuntimeException e){
+        error = e;
+        Flow.Subscription from = upstream;
+        if(from != null){
+            from.cancel();
+        }
+    }
+
+    /** Make progress as far as demand allows; any thread may call, one runs the loop */
+    private void drain(){
+        if(wip.getAndIncrement() != 0){
+            return;
+        }
+        do{
+            Flow.Subscriber<? super T> out = downstream;
+            if(out != null && !terminated){
+                this.drainTo(out);
+            }
+        } while(wip.decrementAndGet() != 0);
+    }
+
+    private void drainTo(Flow.Subscriber<? super T> out){
+        while(!cancelled){
+            if(error != null){
+                terminated = true;
+                out.onError(error);
+                return;
+            }
+            if(!ready.isEmpty()){
+                if(demand.get() == 0){
+                    return;
+                }
+                demand.decrementAndGet();
+                out.onNext(ready.poll());
+            }
+            else if(chunk != null){
+                if(demand.get() == 0){
+                    return;
+                }
+                try{
+                    if(pos < chunk.length()){
+                        scanner.step(chunk.charAt(pos), carry.chunkBase() + pos);
+                        pos++;
+                    }
+                    else{
+                        this.endChunk();
+                    }
+                }
+                catch(RuntimeException e){
+                    this.fail(e);
+                }
+            }
+            else if(!inbox.isEmpty()){
+                chunk = inbox.poll();
+                carry.next(chunk);
+                pos = 0;
+                requested = false;
+            }
+            else if(upstreamDone){
+                if(finished){
+                    terminated = true;
+                    out.onComplete();
+                    return;
+                }
+                finished = true;
+                try{
+                    scanner.finish(carry.chunkBase());
+                }
+                catch(RuntimeException e){
+                    this.fail(e);
+                }
+            }
+            else{
+                if(!requested && demand.get() > 0 && upstream != null){
+                    requested = true;
+                    upstream.request(1);
+                }
+                return;
+            }
+        }
+    }
+
+    /*====Public parts================================================================================================*/
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super T> subscriber) {
+        if(downstream != null){
+            subscriber.onSubscribe(new Flow.Subscription() {
+                @Override
+                public void request(long n) {}
+                @Override
+                public void cancel() {}
+            });
+            subscriber.onError(new IllegalStateException("TokenProcessor takes one subscriber"));
+            return;
+        }
+        subscriber.onSubscribe(new Flow.Subscription() {
+            @Override
+            public void request(long n) {
+                if(n <= 0){
+                    error = new IllegalArgumentException("Request must be positive: " + n);
+                }
+                else{
+                    long current, next;
+                    do{
+                        current = demand.get();
+                        next = (current + n < 0)? Long.MAX_VALUE : current + n;
+                    } while(!demand.compareAndSet(current, next));
+                }
+                drain();
+            }
+            @Override
+            public void cancel() {
+                cancelled = true;
+                Flow.Subscription from = upstream;
+                if(from != null){
+                    from.cancel();
+                }
+            }
+        });
+        downstream = subscriber;
+        this.drain();
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        if(upstream != null || cancelled){
+            subscription.cancel();
+            return;
+        }
+        upstream = subscription;
+        this.drain();
+    }
+
+    @Override
+    public void onNext(CharSequence item) {
+        inbox.add(item);
+        this.drain();
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        error = throwable;
+        this.drain();
+    }
+
+    @Override
+    public void onComplete() {
+        upstreamDone = true;
+        this.drain();
+    }
+}
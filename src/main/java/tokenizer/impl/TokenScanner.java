@@ -0,0 +1,238 @@
+package tokenizer.impl;
+
+import java.util.Arrays;
+
+/** The Tokenizer algorithm as a char-at-a-time state machine.
+ *  Feed every char with its offset to step(), then call finish() with the end offset.
+ *  Offsets are longs so input larger than an array (streams, files) can be fed in pieces.
+ *  Token boundaries go to emit(); escape and skip symbols are judged here but never removed,
+ *  so every engine (String, byte...) can share the rules and keep its own storage. */
+abstract class TokenScanner {
+    private final TokenizerSpec spec;
+    private final byte[] classes;               // spec tables, held here for the hot loop
+    private final char[] closers;
+    private final DelimiterMatcher matcher;     // multi-char delimiters, null if none
+    private int match;                          // matcher state, 0 when no delimiter is partly seen
+    private long lastMatched;                   // offset of the last char fed to the matcher
+    private char[] cSymbols;                    // Closing symbol during skip, cSymbols[depth - 1] on top
+    private int depth;
+    private boolean escaped;
+    private long j;                             // start of pending token
+    private long lastText;                      // last offset of a char that is not an escape symbol
+    private int escapes, maxDepth;              // counted since reset, for flight recorder events
+
+    TokenScanner(TokenizerSpec spec){
+        this.spec = spec;
+        this.classes = spec.classes;
+        this.closers = spec.closers;
+        this.matcher = spec.matcher;
+        this.cSymbols = new char[8];
+    }
+
+    /** Receives token boundaries, end exclusive */
+    abstract void emit(long start, long end);
+
+    /** Outermost skip area entered or left at offset; after any token the symbol ends */
+    void skipArea(boolean enter, char symbol, long offset){}
+
+    /** Unescaped delimiter outside skip areas at offset; after the token it ends */
+    void delimiter(char symbol, long offset){}
+
+    /** Multi-char delimiter outside skip areas at [start, end); after the token before it */
+    void delimiter(long start, long end){}
+
+    /*====Skip area===================================================================================================*/
+
+    boolean enterSkipArea(char symbol){
+        if((spec.classOf(symbol) & TokenizerSpec.OPENER) == 0){
+            return false;
+        }
+        if(depth == cSymbols.length){
+            cSymbols = Arrays.copyOf(cSymbols, depth * 2);
+        }
+        cSymbols[depth++] = closers[symbol];// important side effect
+        if(depth > maxDepth){
+            maxDepth = depth;
+        }
+        return true;
+    }
+
+    boolean inSkipArea(){
+        return depth != 0;
+    }
+
+    boolean leaveSkipArea(char symbol){
+        if(cSymbols[depth - 1] == symbol){
+            depth--;
+            return true;
+        }
+        return false;
+    }
+
+    private boolean haveText(long i, long j){
+        return i != j;
+    }
+
+    /** @return true if the last char fed was an escape symbol, so the next one is taken as is */
+    boolean escaped(){
+        return escaped;
+    }
+
+    /** @return number of escape symbols fed since reset */
+    int escapes(){
+        return escapes;
+    }
+
+    /** @return deepest skip area nesting since reset */
+    int maxDepth(){
+        return maxDepth;
+    }
+
+    /** @return offset where the token that is not yet emitted starts */
+    long pending(){
+        return j;
+    }
+
+    /** @return offset from which fed chars may still be part of a token: the pending token,
+     *  or an earlier start of a multi-char delimiter that is partly seen. Engines that feed text
+     *  in pieces keep it from here, as a delimiter token or the text before it can reach back that far */
+    long retained(){
+        if(match == 0){
+            return j;
+        }
+        return Math.min(j, lastMatched - matcher.seen(match) + 1);
+    }
+
+    /** @param start offset the scan has reached
+     * @return true if the state is what reset(start) gives, so a fresh scan from start would agree */
+    boolean matchesReset(long start){
+        return !escaped && depth == 0 && j == start && (match == 0 || lastMatched != start - 1);
+    }
+
+    /** @param start offset the scan has reached
+     * @return true if the state is what resetInside(start, closer) gives, pending token aside */
+    boolean matchesInside(long start, char closer){
+        return !escaped && depth == 1 && cSymbols[0] == closer && j < start;
+    }
+
+    /*====Scan========================================================================================================*/
+
+    /** @param start offset of the first char that will be fed */
+    void reset(long start){
+        depth = 0;
+        escapes = 0;
+        maxDepth = 0;
+        escaped = false;
+        match = 0;
+        j = start;
+        lastText = start - 1;
+    }
+
+    /** Like reset(start), but inside a skip area that closer ends. The pending token started at some
+     *  offset before start; until setPending() gives it, start - 1 stands for it in emit() and pending() */
+    void resetInside(long start, char closer){
+        this.reset(start);
+        cSymbols[0] = closer;
+        depth = 1;
+        maxDepth = 1;
+        j = start - 1;
+    }
+
+    /** @param start offset the pending token really starts at, if it still has the one resetInside() gave */
+    void setPending(long placeholder, long start){
+        if(j == placeholder){
+            j = start;
+        }
+    }
+
+    void step(char curr, long i){
+        int cls = (curr < classes.length)? classes[curr] : spec.classOutside(curr);
+        if((cls & TokenizerSpec.ESCAPE) != 0 && !(escaped && spec.decodeEscapes)){// decoding: \\ is an escaped backslash
+            escaped = true;
+            escapes++;
+            return;
+        }
+        lastText = i;
+        if(escaped){
+            escaped = false;
+        }
+        else if(cls != 0){// plain text, class 0, has nothing to decide
+            this.decide(curr, cls, i);
+        }
+    }
+
+    /** A char with some class, not escaped; kept out of step() so the plain-text path stays small */
+    private void decide(char curr, int cls, long i){
+        if(cls == TokenizerSpec.MULTI){
+            if(!inSkipArea()){
+                this.multiDelimiter(curr, i);
+            }
+        }
+        else if(inSkipArea()){
+            if(leaveSkipArea(curr)){
+                if(!inSkipArea()){
+                    if(haveText(i, j) && !spec.keepSkipSymbol){
+                        emit(j, i);
+                        j = i + 1;
+                    }
+                    skipArea(false, curr, i);
+                }
+            }
+            else if(enterSkipArea(curr)){}
+        }
+        else if(enterSkipArea(curr)){
+
+            if(!spec.keepSkipSymbol){
+                if(haveText(i, j)){
+                    emit(j, i);
+                    j = i;
+                }
+                j += 1;
+            }
+            skipArea(true, curr, i);
+        }
+        else if((cls & TokenizerSpec.DELIMITER) != 0){
+            if(haveText(i, j)){
+                emit(j, i);
+            }
+            delimiter(curr, i);
+            if(spec.tokenizeDelimiter){
+                if(!spec.delimiterOnce || i != j){
+                    emit(i, i + 1);
+                }
+            }
+            j = i + 1;
+        }
+    }
+
+    /** Feed a char of some multi-char delimiter to the matcher; a delimiter ends at offset.
+     *  Chars not fed (plain, escaped, in skip areas...) break a partial match, so it restarts after a gap */
+    private void multiDelimiter(char curr, long i){
+        match = matcher.next((lastMatched == i - 1)? match : 0, curr);
+        lastMatched = i;
+        int len = matcher.match(match);
+        if(len == 0){
+            return;
+        }
+        match = 0;
+        long start = i - len + 1;// every char of the match is plain text after j
+        if(haveText(start, j)){
+            emit(j, start);
+        }
+        delimiter(start, i + 1);
+        if(spec.tokenizeDelimiter){
+            if(!spec.delimiterOnce || start != j){
+                emit(start, i + 1);
+            }
+        }
+        j = i + 1;
+    }
+
+    /** @param end offset after the last char fed */
+    void finish(long end){
+        // a trailing escape has nothing to escape; it disappears like any other removed escape
+        if(haveText(end, j) && (spec.keepEscapeSymbol || lastText >= j)){
+            emit(j, end);
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package tokenizer.impl;
+
+import tokenizer.iface.ISymbolTable;
+import tokenizer.iface.ITokenSpans;
+
+import java.util.Arrays;
+
+/** Growable start/end offset pairs into a text.
+ *  Storage is a flat int array, reused between parses so a warmed-up tokenizer
+ *  records boundaries without allocating. */
+public class TokenSpans implements ITokenSpans {
+    private CharSequence text;
+    private char[] scratch;                 // copy buffer for non-String text and escape removal
+    private int[] bounds;                   // start0, end0, start1, end1...
+    private int size;
+
+    public TokenSpans(){
+        this(16);
+    }
+    public TokenSpans(int initialCapacity){
+        bounds = new int[Math.max(2, initialCapacity * 2)];
+        scratch = new char[0];
+    }
+
+    void reset(CharSequence text){
+        this.text = text;
+        this.size = 0;
+    }
+
+    void add(int start, int end){
+        int k = size * 2;
+        if(k == bounds.length){
+            bounds = Arrays.copyOf(bounds, k * 2);
+        }
+        bounds[k] = start;
+        bounds[k + 1] = end;
+        size++;
+    }
+
+    void setStart(int i, int start){
+        bounds[check(i) * 2] = start;
+    }
+
+    @Override
+    public CharSequence text() {
+        return text;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public int start(int i) {
+        return bounds[check(i) * 2];
+    }
+
+    @Override
+    public int end(int i) {
+        return bounds[check(i) * 2 + 1];
+    }
+
+    @Override
+    public int length(int i) {
+        return end(i) - start(i);
+    }
+
+    @Override
+    public char charAt(int i, int index) {
+        if(index < 0 || index >= length(i)){
+            throw new IndexOutOfBoundsException("index " + index + " in token " + i);
+        }
+        return text.charAt(start(i) + index);
+    }
+
+    @Override
+    public boolean contentEquals(int i, CharSequence other) {
+        int start = start(i), len = end(i) - start;
+        if(other.length() != len){
+            return false;
+        }
+        for(int k = 0; k < len; k++){
+            if(text.charAt(start + k) != other.charAt(k)){
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int hash(int i) {
+        int h = 0;
+        for(int k = start(i), end = end(i); k < end; k++){
+            h = 31 * h + text.charAt(k);
+        }
+        return h;
+    }
+
+    @Override
+    public String get(int i) {
+        return copy(start(i), end(i), false, false);
+    }
+
+    /** @return token with escape symbols removed, as SimpleTok returns it */
+    String getUnescaped(int i){
+        return copy(start(i), end(i), true, false);
+    }
+
+    /** @return token as Tokenizer.parse() returns it under the given options */
+    String get(int i, TokenizerSpec spec){
+        return copy(start(i), end(i), !spec.keepEscapeSymbol, spec.decodeEscapes);
+    }
+
+    /** @return symbol id of token as get(i, spec) returns it; escapes are resolved in scratch, not a String */
+    int id(int i, TokenizerSpec spec, ISymbolTable symbols){
+        return id(start(i), end(i), !spec.keepEscapeSymbol, spec.decodeEscapes, symbols);
+    }
+
+    /** @return symbol id of token as getUnescaped(i) returns it */
+    int idUnescaped(int i, ISymbolTable symbols){
+        return id(start(i), end(i), true, false, symbols);
+    }
+
+    private int id(int start, int end, boolean unescape, boolean decode, ISymbolTable symbols){
+        if(!(unescape && Escapes.any(text, start, end))){
+            return symbols.id(text, start, end);
+        }
+        if(scratch.length < end - start){
+            scratch = new char[Math.max(end - start, scratch.length * 2)];
+        }
+        return symbols.id(scratch, 0, Escapes.copy(text, start, end, scratch, decode));
+    }
+
+    private String copy(int start, int end, boolean unescape, boolean decode){
+        if(text instanceof String && !(unescape && Escapes.any(text, start, end))){
+            return ((String)text).substring(start, end);
+        }
+        if(scratch.length < end - start){
+            scratch = new char[Math.max(end - start, scratch.length * 2)];
+        }
+        int n;
+        if(unescape){
+            n = Escapes.copy(text, start, end, scratch, decode);
+        }
+        else{
+            n = end - start;
+            for(int k = 0; k < n; k++){
+                scratch[k] = text.charAt(start + k);
+            }
+        }
+        return new String(scratch, 0, n);
+    }
+
+    private int check(int i){
+        if(i < 0 || i >= size){
+            throw new IndexOutOfBoundsException("token " + i + " of " + size);
+        }
+        return i;
+    }
+}
@@ -0,0 +1,245 @@
+package tokenizer.impl;
+
+import tokenizer.iface.ISymbolTable;
+
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+
+/**Lazy token source for streams: scans only as far as the tokens taken.
+ * trySplit() cuts where a scan from the start would be reset anyway: right after an unescaped
+ * delimiter outside skip areas, so both halves give exactly the tokens of one sequential scan.
+ * Without skip symbols such a cut is found locally, near the middle. With skip symbols only a
+ * scan can tell, so the first half is scanned for boundaries (no Strings) up to the first cut
+ * past the middle and handed over; Strings are still made in parallel. A part with nothing
+ * left to scan splits its boundaries by index.
+ */
+abstract class TokenSpliterator {
+    private static final int MIN_SPLIT = 1 << 14;   // chars
+    private static final int MIN_SPLIT_FOUND = 1 << 10;// tokens
+    final TokenizerSpec spec;
+    final CharSequence text;
+    TokenSpans found;                               // boundaries scanned, from head on not yet taken
+    int head;
+    private int tail;                               // found ends here for a part split by index, else MAX_VALUE
+    private PartScanner scanner;
+    private int pos, to;                            // next char to feed, end of this part
+    private boolean finished;
+
+    TokenSpliterator(TokenizerSpec spec, CharSequence text, int from, int to){
+        this.spec = spec;
+        this.text = text;
+        this.to = to;
+        this.tail = Integer.MAX_VALUE;
+        this.start(from);
+    }
+
+    /** Empty part over the same text, for trySplit() to fill in */
+    TokenSpliterator(TokenSpliterator from){
+        this.spec = from.spec;
+        this.text = from.text;
+        this.tail = Integer.MAX_VALUE;
+        this.finished = true;
+    }
+
+    /** @return new TokenSpliterator(this) of the same kind */
+    abstract TokenSpliterator copy();
+
+    /*====Private parts===============================================================================================*/
+
+    /** Scan state can move to the prefix part on a split, so the owner is reassignable */
+    private static final class PartScanner extends TokenScanner {
+        private TokenSpliterator owner;
+
+        PartScanner(TokenSpliterator owner){
+            super(owner.spec);
+            this.owner = owner;
+        }
+
+        @Override
+        void emit(long start, long end) {
+            owner.found.add((int)start, (int)end);
+        }
+    }
+
+    private void start(int from){
+        this.pos = from;
+        this.head = 0;
+        this.found = new TokenSpans();
+        found.reset(text);
+        this.scanner = new PartScanner(this);
+        scanner.reset(from);
+    }
+
+    /** @return true if a delimiter at d is unescaped, judging by the escape symbols before it;
+     *  false if that run reaches back to pos, where the state is not known here */
+    private boolean unescaped(int d){
+        int k = d;
+        while(k > pos && spec.isEscape(text.charAt(k - 1))){
+            k--;
+        }
+        if(k == pos){
+            return false;
+        }
+        // a run of escapes escapes the next char; decoding, they pair off as escaped backslashes
+        return spec.decodeEscapes? (d - k) % 2 == 0 : d == k;
+    }
+
+    /** Cut found locally; the prefix goes on from this part's state, this part starts over at the cut */
+    private TokenSpliterator splitLocal(){
+        for(int d = pos + (to - pos) / 2; d < to - 1; d++){
+            char curr = text.charAt(d);
+            if(spec.isDelimiter(curr) && !spec.isEscape(curr) && unescaped(d)){
+                TokenSpliterator prefix = this.copy();
+                prefix.found = found;
+                prefix.head = head;
+                prefix.scanner = scanner;
+                scanner.owner = prefix;
+                prefix.pos = pos;
+                prefix.to = d + 1;
+                prefix.finished = false;
+                this.start(d + 1);
+                return prefix;
+            }
+        }
+        return null;
+    }
+
+    /** Cut found by scanning on to the first reset state past the middle */
+    private TokenSpliterator splitScanned(){
+        int mid = pos + (to - pos) / 2;
+        while(pos < to){
+            scanner.step(text.charAt(pos), pos);
+            pos++;
+            if(pos >= mid && pos < to && scanner.matchesReset(pos)){
+                TokenSpliterator prefix = this.copy();
+                prefix.found = found;
+                prefix.head = head;
+                this.start(pos);
+                return prefix;
+            }
+        }
+        return null;// scanned to the end without a cut: all boundaries stay here
+    }
+
+    /** Nothing left to scan: the prefix takes the first half of the boundaries found, sharing them */
+    private TokenSpliterator splitFound(){
+        int end = Math.min(found.size(), tail);
+        if(end - head < MIN_SPLIT_FOUND){
+            return null;
+        }
+        TokenSpliterator prefix = this.copy();
+        prefix.found = found;
+        prefix.head = head;
+        prefix.tail = head + (end - head) / 2;
+        this.head = prefix.tail;
+        return prefix;
+    }
+
+    /*====Spliterator parts===========================================================================================*/
+
+    /** @return index in found of the next token, -1 at end */
+    int next(){
+        while(head == found.size()){
+            if(finished){
+                return -1;
+            }
+            if(head != 0){
+                found.reset(text);
+                head = 0;
+            }
+            if(pos < to){
+                scanner.step(text.charAt(pos), pos);
+                pos++;
+            }
+            else{
+                scanner.finish(to);
+                finished = true;
+            }
+        }
+        return (head < tail)? head++ : -1;
+    }
+
+    TokenSpliterator split(){
+        if(finished){
+            return this.splitFound();
+        }
+        if(to - pos < MIN_SPLIT){
+            return null;
+        }
+        return (spec.oMap.length == 0 && spec.matcher == null)? this.splitLocal() : this.splitScanned();
+    }
+
+    /** @return chars left to scan plus tokens found; tokens are fewer */
+    public long estimateSize(){
+        return (finished? 0 : to - pos) + Math.min(found.size(), tail) - head;
+    }
+
+    public int characteristics(){
+        return Spliterator.ORDERED | Spliterator.NONNULL;
+    }
+
+    /** Tokens as parse() returns them */
+    static final class Strings extends TokenSpliterator implements Spliterator<String> {
+        Strings(TokenizerSpec spec, CharSequence text){
+            super(spec, text, 0, text.length());
+        }
+        private Strings(Strings from){
+            super(from);
+        }
+
+        @Override
+        TokenSpliterator copy() {
+            return new Strings(this);
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super String> action) {
+            int k = this.next();
+            if(k < 0){
+                return false;
+            }
+            action.accept(found.get(k, spec));
+            return true;
+        }
+
+        @Override
+        public Spliterator<String> trySplit() {
+            return (Strings)this.split();
+        }
+    }
+
+    /** Symbol ids of tokens, no String made for known tokens */
+    static final class Ids extends TokenSpliterator implements Spliterator.OfInt {
+        private final ISymbolTable symbols;
+
+        Ids(TokenizerSpec spec, CharSequence text, ISymbolTable symbols){
+            super(spec, text, 0, text.length());
+            this.symbols = symbols;
+        }
+        private Ids(Ids from){
+            super(from);
+            this.symbols = from.symbols;
+        }
+
+        @Override
+        TokenSpliterator copy() {
+            return new Ids(this);
+        }
+
+        @Override
+        public boolean tryAdvance(IntConsumer action) {
+            int k = this.next();
+            if(k < 0){
+                return false;
+            }
+            action.accept(found.id(k, spec, symbols));
+            return true;
+        }
+
+        @Override
+        public Spliterator.OfInt trySplit() {
+            return (Ids)this.split();
+        }
+    }
+}
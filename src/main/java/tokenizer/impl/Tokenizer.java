@@ -1,10 +1,17 @@
 package tokenizer.impl;
 
+import tokenizer.iface.ISymbolTable;
+import tokenizer.iface.ITokenCursor;
+import tokenizer.iface.ITokenSink;
+import tokenizer.iface.ITokenSpans;
 import tokenizer.iface.ITokenizer;
-import tokenizer.iface.IWhitespace;
 
+import java.nio.CharBuffer;
 import java.util.ArrayList;
-import java.util.Stack;
+import java.util.List;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**A more complex string tokenizer.
  * Supports multiple delimiters
@@ -12,11 +19,12 @@ import java.util.Stack;
  * Supports 'skip area' (quoted or bracketed text). Tokenizer leaves these areas joined.
  * Supports multiple, nested skip symbols. Outermost symbol defines skip area.
  * Option to keep or discard delimiters, skip symbols.
+ * Option to record token boundaries only, without creating Strings (parseSpans).
  * Use builder to set options.
  *
  * Sample usage:
  *   String text = "Sentence__with_(too_many_'delims')_and_quotes__";
- *   String[] tok = Tokenizer.builder().delimiters(" _").skipSymbols("('").build().parse(text).toArray();
+ *   String[] tok = Tokenizer.builder().delimiters(' ', '_').skipSymbols("('").build().parse(text).toArray();
  * Output:
  * 	  Sentence
  * 	  with
@@ -25,200 +33,270 @@ import java.util.Stack;
  * 	  quotes
  */
 public class Tokenizer implements ITokenizer {
-    private static ITokenizer instance;
+    private static final TokenizerSpec defaultSpec = Tokenizer.builder().delimiters(' ').skipSymbols("'").buildSpec();
 
+    /** @return new tokenizer on the shared default spec (' ' delimiter, ' skip symbol);
+     *  cheap, and no parse state is shared with other callers */
     public static ITokenizer initInstance(){
-        return (instance == null)?
-            (instance = Tokenizer.builder().delimiters(' ').skipSymbols("'").build())
-                : instance;
+        return new Tokenizer(defaultSpec);
     }
 
-    private static final char escape = '\\';
-    private IWhitespace whitespace;
-    private String delimiters;              // input text, list of delimiters text,
-    private char[] oMap, cMap;              // matched open/close skip char arrays
+    private TokenizerSpec spec;             // options, shareable with other engines
+    private TokenScanner scanner;           // skip and escape rules of spec
     private ArrayList<String> tokens;       // output
-    private Stack<Character> cSymbols;      // Closing symbol during skip
-    private boolean tokenizeDelimiter;      // save delimiter to own element
-    private boolean delimiterOnce;          // save delimiter to own element, ignore duplicates
-    private boolean keepSkipSymbol;         // obey skip symbols and leave in (default out)
-    private boolean keepEscapeSymbol;       // obey escape symbol and leave in for later processing
-    private String text;
+    private final TokenSpans spans;         // output, token boundaries into text
+    private CharSequence text;
     private int[] indents;
 
-    private Tokenizer(){
-        tokenizeDelimiter = false;
-        keepSkipSymbol = false;
-        keepEscapeSymbol = false;
+    public Tokenizer(TokenizerSpec spec){
+        this.spans = new TokenSpans();
+        this.setSpec(spec);
     }
 
     /*====Private parts===============================================================================================*/
 
-    private void setMap(String skips){
-        // map openers to closers, using symbols from arg
-        // if you want different symbols, pass arrays with Builder
-        oMap =  new char[skips.length()];
-        cMap =  new char[skips.length()];
-        char[] openers = new char[]{'(','{','[','<','"','\''};
-        char[] closers = new char[]{')','}',']','>','"','\''};
-        int to = 0;
-        for (int i = 0; i < openers.length; i++) {
-            if(skips.indexOf(openers[i])!=-1){
-                oMap[to]=openers[i];
-                cMap[to]=closers[i];
-                to++;
-            }
-        }
-    }
-    private boolean isEscape(char symbol){
-        return symbol == escape;
-    }
-    private boolean isDelimiter(char symb){
-        return delimiters.indexOf(symb) != -1 || whitespace.isWhitespace(symb);
-    }
-
-    private boolean haveText(int i, int j){
-        return i != j;
+    private void setSpec(TokenizerSpec spec){
+        this.spec = spec;
+        this.scanner = newScanner(spec, spans);
     }
 
-    private boolean enterSkipArea(char symbol){
-        for(int i=0; i<oMap.length; i++){
-            if(symbol == oMap[i]){
-                this.cSymbols.push(cMap[i]);// important side effect
-                return true;
+    private static TokenScanner newScanner(TokenizerSpec spec, final TokenSpans out){
+        return new TokenScanner(spec) {
+            @Override
+            void emit(long start, long end) {
+                out.add((int)start, (int)end);
             }
-        }
-        return false;
-    }
-
-    private boolean inSkipArea(){
-        return !cSymbols.isEmpty();
+        };
     }
 
-    private boolean leaveSkipArea(char symbol){
-        if(cSymbols.peek().equals(symbol)){
-            cSymbols.pop();
-            return true;
+    /** Every eager parse comes through here, so this is where it is recorded */
+    private static void scan(CharSequence text, TokenScanner scanner, TokenSpans out){
+        ParseEvent event = TokenizerEvents.begin();
+        out.reset(text);
+        int len = text.length();
+        scanner.reset(0);
+        for (int i = 0; i < len; i++) {
+            scanner.step(text.charAt(i), i);
         }
-        return false;
+        scanner.finish(len);
+        TokenizerEvents.end(event, "Tokenizer", len, out.size(), scanner.maxDepth(), scanner.escapes());
     }
 
-    private boolean noMoreSkips(){
-        return cSymbols.empty();
+    /** Per-call context: own scanner and spans, only the immutable spec is shared */
+    private static TokenSpans scan(CharSequence text, TokenizerSpec spec){
+        TokenSpans out = new TokenSpans();
+        scan(text, newScanner(spec, out), out);
+        return out;
     }
 
     /*====Public parts================================================================================================*/
 
     @Override
     public ITokenizer setText(String text) {
+        return this.setText((CharSequence)text);
+    }
+
+    @Override
+    public ITokenizer setText(CharSequence text) {
         this.text = text;
         return this;
     }
 
+    @Override
+    public ITokenizer setText(char[] text, int offset, int length) {
+        this.text = CharBuffer.wrap(text, offset, length);
+        return this;
+    }
+
     @Override
     public ITokenizer setDelimiter(char... delimiter) {
-        this.delimiters = new String(delimiter);
-        if(this.delimiters.contains(" ")){
-            whitespace = new IWhitespace() {
-                @Override
-                public boolean isWhitespace(char symbol) {
-                    return ((int)symbol) < 33;
-                }
-            };
-        }
-        else{
-            whitespace = new IWhitespace() {
-                @Override
-                public boolean isWhitespace(char symbol) {
-                    return false;
-                }
-            };
-        }
+        this.setSpec(spec.withDelimiters(delimiter));
         return this;
     }
 
+    /** @return the options this tokenizer runs on, to share with other engines */
+    public TokenizerSpec spec(){
+        return spec;
+    }
+
     @Override
     public ITokenizer parse() {
-        cSymbols = new Stack<>();
-        this.tokens = new ArrayList<>();
         this.indents = null;
+        scan(text, scanner, spans);
+        this.tokens = new ArrayList<>(spans.size());
+        for(int k = 0; k < spans.size(); k++){
+            tokens.add(spans.get(k, spec));
+        }
+        return this;
+    }
 
-        int i = 0, j = 0, len = text.length();
-        boolean escaped = false;
-        for (i = 0; i < len; i++) {
-            char curr = text.charAt(i);
+    @Override
+    public ITokenizer parseSpans() {
+        this.tokens = null;
+        this.indents = null;
+        scan(text, scanner, spans);
+        return this;
+    }
 
-            if(isEscape(text.charAt(i))){
-                escaped = true;
-                if(!keepEscapeSymbol){
-                    text = text.substring(0, i) + text.substring(i + 1);
-                    len--;
-                    i--;
+    @Override
+    public ArrayList<String> tokenize(CharSequence text) {
+        TokenizerSpec spec = this.spec;// one spec for the whole call
+        TokenSpans out = scan(text, spec);
+        ArrayList<String> list = new ArrayList<>(out.size());
+        for(int k = 0; k < out.size(); k++){
+            list.add(out.get(k, spec));
+        }
+        return list;
+    }
+
+    @Override
+    public ITokenSpans tokenizeSpans(CharSequence text) {
+        return scan(text, spec);
+    }
+
+    @Override
+    public void tokenize(final CharSequence text, final ITokenSink sink) {
+        final TokenizerSpec spec = this.spec;
+        final int[] tokens = new int[1];// count for the flight recorder, bumped by the anonymous pusher
+        TokenScanner pusher = new TokenScanner(spec) {
+            private char[] scratch = new char[0];
+            private CharBuffer view = CharBuffer.wrap(scratch);// reused flyweight over scratch
+
+            @Override
+            void emit(long start, long end) {
+                int s = (int)start, e = (int)end;
+                tokens[0]++;
+                if(spec.keepEscapeSymbol || !Escapes.any(text, s, e)){
+                    sink.token(text, s, e);
+                    return;
                 }
+                if(scratch.length < e - s){
+                    scratch = new char[Math.max(e - s, scratch.length * 2)];
+                    view = CharBuffer.wrap(scratch);
+                }
+                sink.token(view, 0, Escapes.copy(text, s, e, scratch, spec.decodeEscapes));
             }
-            else if(escaped){
-                escaped = false;
-            }
-            else{
-                if(inSkipArea()){
-                    if(leaveSkipArea(curr)){
-                        if(noMoreSkips() && haveText(i, j) && !keepSkipSymbol){
-                            tokens.add(text.substring(j, i));
-                            j = i + 1;
-                        }
 
-                    }
-                    else if(enterSkipArea(curr)){}
+            @Override
+            void skipArea(boolean enter, char symbol, long offset) {
+                if(enter){
+                    sink.enterSkip(symbol, (int)offset);
                 }
-                else if(enterSkipArea(curr)){
-
-                    if(!keepSkipSymbol){
-                        if(haveText(i, j)){
-                            tokens.add(text.substring(j, i));
-                            j = i;
-                        }
-                        j += 1;
-                    }
+                else{
+                    sink.leaveSkip(symbol, (int)offset);
                 }
-                else if(isDelimiter(curr)){
-                    if(haveText(i, j)){
-                        tokens.add(text.substring(j, i));
+            }
+
+            @Override
+            void delimiter(char symbol, long offset) {
+                sink.delimiter(symbol, (int)offset);
+            }
+
+            @Override
+            void delimiter(long start, long end) {
+                sink.delimiter(text, (int)start, (int)end);
+            }
+        };
+        ParseEvent event = TokenizerEvents.begin();
+        int len = text.length();
+        pusher.reset(0);
+        for (int i = 0; i < len; i++) {
+            pusher.step(text.charAt(i), i);
+        }
+        pusher.finish(len);
+        TokenizerEvents.end(event, "Tokenizer", len, tokens[0], pusher.maxDepth(), pusher.escapes());
+    }
+
+    @Override
+    public int[] tokenizeIds(CharSequence text, ISymbolTable symbols) {
+        TokenizerSpec spec = this.spec;
+        TokenSpans out = scan(text, spec);
+        int[] ids = new int[out.size()];
+        for(int k = 0; k < ids.length; k++){
+            ids[k] = out.id(k, spec, symbols);
+        }
+        return ids;
+    }
+
+    /** Parallel streams split text at delimiters, see TokenSpliterator */
+    @Override
+    public Stream<String> stream(CharSequence text) {
+        return StreamSupport.stream(new TokenSpliterator.Strings(spec, text), false);
+    }
+
+    @Override
+    public IntStream idStream(CharSequence text, ISymbolTable symbols) {
+        return StreamSupport.intStream(new TokenSpliterator.Ids(spec, text, symbols), false);
+    }
+
+    @Override
+    public ITokenCursor cursor(final CharSequence text) {
+        final TokenizerSpec spec = this.spec;
+        return new TokenCursor(text) {
+            private final TokenScanner scanner = newScanner(spec, ready);
+            private int i;
+            private boolean done;
+
+            {
+                scanner.reset(0);
+            }
+
+            @Override
+            void advance() {
+                int len = text.length();
+                while(ready.size() == 0 && !done){
+                    if(i < len){
+                        scanner.step(text.charAt(i), i);
+                        i++;
                     }
-                    if(tokenizeDelimiter){
-                        if(!delimiterOnce || i != j){
-                            tokens.add(text.substring(i, i + 1));
-                        }
+                    else{
+                        scanner.finish(len);
+                        done = true;
                     }
-                    j = i + 1;
                 }
             }
-        }
 
-        if(haveText(i, j)){
-            tokens.add(text.substring(j, i));
-        }
-        return this;
+            @Override
+            String get(int k) {
+                return ready.get(k, spec);
+            }
+
+            @Override
+            int id(int k, ISymbolTable symbols) {
+                return ready.id(k, spec, symbols);
+            }
+        };
     }
 
     private void calculateIndents(){
         indents = new int[tokens.size() + 1];
-        cSymbols = new Stack<>();
+        TokenScanner skips = new TokenScanner(spec) {
+            @Override
+            void emit(long start, long end) {}
+        };
         boolean last = false;
 
-        int k = (isDelimiter(text.charAt(0)))? 0 : 1;
+        int first = 0;
+        while(!spec.keepEscapeSymbol && first < text.length() - 1 && spec.isEscape(text.charAt(first))){
+            first++;
+        }
+        int k = (spec.isDelimiter(text.charAt(first)))? 0 : 1;
         for (int i = 0; i < text.length(); i++) {
             char curr = text.charAt(i);
 
-            if(inSkipArea()){
-                if(leaveSkipArea(curr) || enterSkipArea(curr)){}
+            if(!spec.keepEscapeSymbol && spec.isEscape(curr)){// removed from tokens, so not counted here
+                continue;
+            }
+            if(skips.inSkipArea()){
+                if(skips.leaveSkipArea(curr) || skips.enterSkipArea(curr)){}
             }
-            else if(enterSkipArea(curr)){
+            else if(skips.enterSkipArea(curr)){
                 if (last){
                     k++;
                     last = false;
                 }
             }
-            else if(isDelimiter(curr)){
+            else if(spec.isDelimiter(curr)){
                 indents[k]++;
                 last = true;
             }
@@ -234,6 +312,11 @@ public class Tokenizer implements ITokenizer {
         return this.tokens;
     }
 
+    @Override
+    public ITokenSpans toSpans() {
+        return this.spans;
+    }
+
     @Override
     public String[] toArray() {
         return this.tokens.toArray(new String[0]);
@@ -241,7 +324,7 @@ public class Tokenizer implements ITokenizer {
 
     @Override
     public int[] indents() {
-        if(tokens == null){
+        if(tokens == null){// indents are per String token, not available after parseSpans()
             throw new IllegalStateException("Must parse text before calculating indents");
         }
         if(indents == null){
@@ -254,80 +337,133 @@ public class Tokenizer implements ITokenizer {
         return new Builder();
     }
 
+    /** Option methods return this concrete Builder, so buildSpec() is reachable after chaining */
     public static class Builder implements ITokenizer.Builder {
-        Tokenizer built;
+        private String delimiters;
+        private String[] multiDelimiters = new String[0];
+        private char[] oMap, cMap;
+        private boolean tokenizeDelimiter;
+        private boolean delimiterOnce;
+        private boolean keepSkipSymbol;
+        private boolean keepEscapeSymbol;
+        private boolean decodeEscapes;
+        private boolean unicodeWhitespace;
 
         private Builder(){
-            built = new Tokenizer();
+            tokenizeDelimiter = false;
+            keepSkipSymbol = false;
+            keepEscapeSymbol = false;
+        }
+
+        private void setMap(String skips){
+            char[][] maps = TokenizerSpec.defaultMap(skips);
+            oMap = maps[0];
+            cMap = maps[1];
         }
 
         @Override
-        public ITokenizer.Builder delimiters(char... delimiter) {
-            built.setDelimiter(delimiter);
+        public Builder delimiters(char... delimiter) {
+            this.delimiters = new String(delimiter);
+            this.multiDelimiters = new String[0];
             return this;
         }
 
         @Override
-        public ITokenizer.Builder skipSymbols(String openingSymbols) {
-            built.setMap(openingSymbols);
+        public Builder delimiters(String... delimiter) {
+            StringBuilder single = new StringBuilder();
+            List<String> multi = new ArrayList<>();
+            for(String symbol : delimiter){
+                if(symbol.length() == 1){
+                    single.append(symbol);
+                }
+                else if(!symbol.isEmpty()){
+                    multi.add(symbol);
+                }
+            }
+            this.delimiters = single.toString();
+            this.multiDelimiters = multi.toArray(new String[0]);
             return this;
         }
 
         @Override
-        public ITokenizer.Builder skipSymbols(char oneOpeningSymbol) {
-            built.setMap(String.valueOf(oneOpeningSymbol));
+        public Builder skipSymbols(String openingSymbols) {
+            setMap(openingSymbols);
             return this;
         }
 
         @Override
-        public ITokenizer.Builder skipSymbols(char openingSymbol, char closingSymbol) {
-            built.oMap = new char[]{openingSymbol};
-            built.cMap = new char[]{closingSymbol};
+        public Builder skipSymbols(char oneOpeningSymbol) {
+            setMap(String.valueOf(oneOpeningSymbol));
             return this;
         }
 
         @Override
-        public ITokenizer.Builder skipSymbols(char[] oMap, char[] cMap) {
-            built.oMap = oMap;
-            built.cMap = cMap;
+        public Builder skipSymbols(char openingSymbol, char closingSymbol) {
+            this.oMap = new char[]{openingSymbol};
+            this.cMap = new char[]{closingSymbol};
             return this;
         }
 
         @Override
-        public ITokenizer.Builder keepSkipSymbol() {
-            built.keepSkipSymbol = true;
+        public Builder skipSymbols(char[] oMap, char[] cMap) {
+            this.oMap = oMap;
+            this.cMap = cMap;
             return this;
         }
 
         @Override
-        public ITokenizer.Builder keepEscapeSymbol() {
-            built.keepEscapeSymbol = true;
+        public Builder keepSkipSymbol() {
+            this.keepSkipSymbol = true;
             return this;
         }
 
         @Override
-        public ITokenizer.Builder tokenizeDelimiter() {
-            built.tokenizeDelimiter = true;
+        public Builder keepEscapeSymbol() {
+            this.keepEscapeSymbol = true;
             return this;
         }
 
         @Override
-        public ITokenizer.Builder tokenizeDelimiterOnce() {
-            built.tokenizeDelimiter = true;
-            built.delimiterOnce = true;
+        public Builder decodeEscapes() {
+            this.decodeEscapes = true;
             return this;
         }
 
+        @Override
+        public Builder unicodeWhitespace() {
+            this.unicodeWhitespace = true;
+            return this;
+        }
 
         @Override
-        public ITokenizer build() {
-            if(built.oMap == null){
-                built.oMap = new char[0];
+        public Builder tokenizeDelimiter() {
+            this.tokenizeDelimiter = true;
+            return this;
+        }
+
+        @Override
+        public Builder tokenizeDelimiterOnce() {
+            this.tokenizeDelimiter = true;
+            this.delimiterOnce = true;
+            return this;
+        }
+
+        /** @return the options alone, for engines other than Tokenizer */
+        public TokenizerSpec buildSpec() {
+            if(oMap == null){
+                oMap = new char[0];
+                cMap = new char[0];
             }
-            if(built.delimiters == null){
-                built.setDelimiter(' ');
+            if(delimiters == null){
+                delimiters = " ";
             }
-            return built;
+            return new TokenizerSpec(delimiters, multiDelimiters, oMap, cMap,
+                    tokenizeDelimiter, delimiterOnce, keepSkipSymbol, keepEscapeSymbol, decodeEscapes, unicodeWhitespace);
+        }
+
+        @Override
+        public ITokenizer build() {
+            return new Tokenizer(buildSpec());
         }
     }
 }
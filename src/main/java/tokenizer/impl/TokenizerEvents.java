@@ -0,0 +1,122 @@
+package tokenizer.impl;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Period;
+import jdk.jfr.StackTrace;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**Flight recorder hooks for the tokenizers.
+ * Every eager parse adds to process-wide totals, reported by a periodic tokenizer.Stats event
+ * (every second by default); parses above the threshold also give a tokenizer.Parse event.
+ * Eager parses are parse(), parseSpans(), tokenize(), tokenizeSpans() and tokenizeIds() of
+ * Tokenizer and SimpleTok, ByteTokenizer.parse(), BatchTokenizer.parse() (one per batch),
+ * a StreamingTokenizer input read to its end, and WordTraitParser.parse(). Cursors, streams
+ * and the other engines are not counted.
+ * Until the flight recorder is initialized, by a recording or -XX:StartFlightRecording,
+ * a parse costs one flag check: nothing is counted and no JFR class is loaded, as loading
+ * an event class sets JFR up, which takes hundreds of milliseconds. Totals therefore start
+ * with the first parse after initialization, which also adds the Stats hook.
+ *
+ * Sample usage, inside an engine:
+ *   ParseEvent event = TokenizerEvents.begin();
+ *   ...parse...
+ *   TokenizerEvents.end(event, "MyEngine", chars, tokens, maxSkipDepth, escapes);
+ */
+public final class TokenizerEvents {
+    private static final LongAdder parses = new LongAdder();
+    private static final LongAdder chars = new LongAdder();
+    private static final LongAdder tokens = new LongAdder();
+    private static final LongAdder escapes = new LongAdder();
+    private static final AtomicInteger maxSkipDepth = new AtomicInteger();
+
+    private static volatile boolean registered;         // Stats hook added
+
+    private TokenizerEvents(){}
+
+    @Name("tokenizer.Stats")
+    @Label("Tokenizer Totals")
+    @Category("Tokenizer")
+    @Description("Totals of all parses since the flight recorder was initialized")
+    @Period("1 s")
+    @StackTrace(false)
+    static final class StatsEvent extends jdk.jfr.Event {
+        @Label("Parses")
+        long parses;
+
+        @Label("Chars Scanned")
+        long chars;
+
+        @Label("Tokens Emitted")
+        long tokens;
+
+        @Label("Max Skip Depth")
+        int maxSkipDepth;
+
+        @Label("Escapes")
+        long escapes;
+    }
+
+    private static synchronized void register(){
+        if(registered){
+            return;
+        }
+        FlightRecorder.addPeriodicEvent(StatsEvent.class, new Runnable() {
+            @Override
+            public void run() {
+                StatsEvent event = new StatsEvent();
+                event.parses = parses.sum();
+                event.chars = chars.sum();
+                event.tokens = tokens.sum();
+                event.escapes = escapes.sum();
+                event.maxSkipDepth = maxSkipDepth.get();
+                event.commit();
+            }
+        });
+        registered = true;
+    }
+
+    /** @return event timing a parse that starts now, null while the flight recorder is not initialized */
+    public static ParseEvent begin(){
+        if(!FlightRecorder.isInitialized()){
+            return null;
+        }
+        if(!registered){
+            register();
+        }
+        ParseEvent event = new ParseEvent();
+        event.begin();
+        return event;
+    }
+
+    /** Add a finished parse to the totals, and commit its event if it ran long enough
+     * @param event from begin(); null if the flight recorder was not initialized, and then nothing is done */
+    public static void end(ParseEvent event, String engine, long chars, int tokens, int maxSkipDepth, int escapes){
+        if(event == null){
+            return;
+        }
+        TokenizerEvents.parses.increment();
+        TokenizerEvents.chars.add(chars);
+        TokenizerEvents.tokens.add(tokens);
+        if(escapes != 0){
+            TokenizerEvents.escapes.add(escapes);
+        }
+        if(maxSkipDepth > TokenizerEvents.maxSkipDepth.get()){
+            TokenizerEvents.maxSkipDepth.accumulateAndGet(maxSkipDepth, Math::max);
+        }
+        event.end();
+        if(event.shouldCommit()){
+            event.engine = engine;
+            event.chars = chars;
+            event.tokens = tokens;
+            event.maxSkipDepth = maxSkipDepth;
+            event.escapes = escapes;
+            event.commit();
+        }
+    }
+}
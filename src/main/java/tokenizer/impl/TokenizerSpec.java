@@ -0,0 +1,144 @@
+package tokenizer.impl;
+
+/** Immutable tokenizer options, as set on Tokenizer.Builder.
+ *  One spec can drive any of the tokenizer engines (String, byte, ...) so they all
+ *  follow the same delimiter, skip-symbol and escape rules.
+ *
+ * Sample usage:
+ *   TokenizerSpec spec = Tokenizer.builder().delimiters(' ').skipSymbols("'").buildSpec();
+ *   ITokenizer tokenizer = new Tokenizer(spec);
+ *   ByteTokenizer byteTokenizer = new ByteTokenizer(spec, StandardCharsets.UTF_8);
+ */
+public final class TokenizerSpec {
+    static final char escape = '\\';
+    static final byte DELIMITER = 1, OPENER = 2, CLOSER = 4, ESCAPE = 8, MULTI = 16;
+    final String delimiters;                // list of delimiters
+    final DelimiterMatcher matcher;         // multi-char delimiters, null if none
+    final char[] oMap, cMap;                // matched open/close skip char arrays
+    final boolean tokenizeDelimiter;        // save delimiter to own element
+    final boolean delimiterOnce;            // save delimiter to own element, ignore duplicates
+    final boolean keepSkipSymbol;           // obey skip symbols and leave in (default out)
+    final boolean keepEscapeSymbol;         // obey escape symbol and leave in for later processing
+    final boolean decodeEscapes;            // turn \n, \t... into the chars they stand for
+    final boolean unicodeWhitespace;        // with ' ': Unicode white space delimits too, not only chars below 33
+    final byte[] classes;                   // DELIMITER, OPENER... bits per char; chars past the end have none
+    final char[] closers;                   // closing symbol per opening symbol, indexed by char
+
+    TokenizerSpec(String delimiters, String[] multiDelimiters, char[] oMap, char[] cMap, boolean tokenizeDelimiter,
+                  boolean delimiterOnce, boolean keepSkipSymbol, boolean keepEscapeSymbol, boolean decodeEscapes,
+                  boolean unicodeWhitespace) {
+        if(oMap.length != cMap.length){
+            throw new IllegalStateException("Skip symbol arrays must match in size");
+        }
+        if(keepEscapeSymbol && decodeEscapes){
+            throw new IllegalStateException("Cannot both keep and decode escape symbols");
+        }
+        this.delimiters = delimiters;
+        this.matcher = (multiDelimiters.length == 0)? null : new DelimiterMatcher(multiDelimiters);
+        this.oMap = oMap.clone();
+        this.cMap = cMap.clone();
+        this.tokenizeDelimiter = tokenizeDelimiter;
+        this.delimiterOnce = delimiterOnce;
+        this.keepSkipSymbol = keepSkipSymbol;
+        this.keepEscapeSymbol = keepEscapeSymbol;
+        this.decodeEscapes = decodeEscapes;
+        for(int i = 0; i < delimiters.length(); i++){
+            if(Character.isSurrogate(delimiters.charAt(i))){
+                throw new IllegalStateException("Code points above U+FFFF are two chars: give them as String delimiters");
+            }
+        }
+        // one table lookup per char instead of searching delimiters and skip arrays
+        boolean whitespace = delimiters.indexOf(' ') != -1;
+        this.unicodeWhitespace = whitespace && unicodeWhitespace;
+        int size = Math.max(maxSymbol() + 1, whitespace? 33 : 0);
+        this.classes = new byte[size];
+        this.closers = new char[size];
+        for(int i = 0; i < delimiters.length(); i++){
+            classes[delimiters.charAt(i)] |= DELIMITER;
+        }
+        for(int i = 0; whitespace && i < 33; i++){
+            classes[i] |= DELIMITER;
+        }
+        for(int i = 0x80; this.unicodeWhitespace && i < size; i++){// past the table, classOutside() decides
+            if(isUnicodeSpace((char)i)){
+                classes[i] |= DELIMITER;
+            }
+        }
+        for(int i = oMap.length - 1; i >= 0; i--){// first opener in map wins
+            classes[oMap[i]] |= OPENER;
+            classes[cMap[i]] |= CLOSER;
+            closers[oMap[i]] = cMap[i];
+        }
+        classes[escape] |= ESCAPE;
+        for(int i = 0; matcher != null && i <= matcher.maxSymbol(); i++){
+            if(matcher.uses((char)i)){
+                if(classes[i] != 0){// a char the scan already reacts to would never reach the matcher
+                    throw new IllegalStateException("Multi-char delimiter holds a delimiter, skip or escape symbol: char " + i);
+                }
+                classes[i] = MULTI;
+            }
+        }
+    }
+
+    /** @return copy of this spec with other delimiters, multi-char ones dropped */
+    public TokenizerSpec withDelimiters(char... delimiter){
+        return new TokenizerSpec(new String(delimiter), new String[0], oMap, cMap,
+                tokenizeDelimiter, delimiterOnce, keepSkipSymbol, keepEscapeSymbol, decodeEscapes, unicodeWhitespace);
+    }
+
+    boolean isEscape(char symbol){
+        return symbol == escape;
+    }
+
+    boolean isDelimiter(char symb){
+        return (classOf(symb) & DELIMITER) != 0;
+    }
+
+    /** @return DELIMITER, OPENER, CLOSER and ESCAPE bits of symbol, 0 for plain text */
+    int classOf(char symb){
+        return (symb < classes.length)? classes[symb] : classOutside(symb);
+    }
+
+    /** Chars past the table are plain text, unless Unicode white space is on and symb is some */
+    int classOutside(char symb){
+        return (unicodeWhitespace && isUnicodeSpace(symb))? DELIMITER : 0;
+    }
+
+    /** @return true for Unicode White_Space at or above 0x80: NEL, NBSP, U+2000 to U+200A, U+2028, U+3000... */
+    static boolean isUnicodeSpace(char symb){
+        return symb >= 0x80 && (symb == '\u0085' || Character.isSpaceChar(symb));
+    }
+
+    /** @return the highest char any rule of this spec reacts to, whitespace aside */
+    char maxSymbol(){
+        char max = escape;
+        for(int i = 0; i < delimiters.length(); i++){
+            max = (char)Math.max(max, delimiters.charAt(i));
+        }
+        for(int i = 0; i < oMap.length; i++){
+            max = (char)Math.max(max, Math.max(oMap[i], cMap[i]));
+        }
+        if(matcher != null){
+            max = (char)Math.max(max, matcher.maxSymbol());
+        }
+        return max;
+    }
+
+    static char[][] defaultMap(String skips){
+        // map openers to closers, using symbols from arg
+        // if you want different symbols, pass arrays with Builder
+        char[] oMap =  new char[skips.length()];
+        char[] cMap =  new char[skips.length()];
+        char[] openers = new char[]{'(','{','[','<','"','\''};
+        char[] closers = new char[]{')','}',']','>','"','\''};
+        int to = 0;
+        for (int i = 0; i < openers.length; i++) {
+            if(skips.indexOf(openers[i])!=-1){
+                oMap[to]=openers[i];
+                cMap[to]=closers[i];
+                to++;
+            }
+        }
+        return new char[][]{oMap, cMap};
+    }
+}
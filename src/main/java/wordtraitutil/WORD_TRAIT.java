@@ -8,6 +8,8 @@ import wordtraitutil.impl.CharTraitImplGroup;
 import wordtraitutil.impl.TraitPatternUtil;
 import wordtraitutil.impl.WordTraitParser;
 
+import java.util.function.Function;
+
 import static wordtraitutil.impl.ExtractImplGroup.*;
 
 public enum WORD_TRAIT {
@@ -24,20 +26,7 @@ public enum WORD_TRAIT {
     STAR_RANGE      ("-'+*-,-.+:-A+C+N+[-_", ExtractNumbers.initInstance(':')),   // "*:CN["
     ;
 
-    private static final IWordTraitParser wordTraitParser = WordTraitParser.builder().
-        skipSymbols('\'').keepEscapeSymbol().
-        traits(
-                new CharTraitImplGroup.CharTrait('\''),
-                new CharTraitImplGroup.CharTrait('.'),
-                new CharTraitImplGroup.CharTrait(','),
-                new CharTraitImplGroup.CharTrait(':'),
-                new CharTraitImplGroup.CharTrait('*'),
-                new CharTraitImplGroup.CharTrait('['),
-                new CharTraitImplGroup.CharTrait('_'),
-                new CharTraitImplGroup.CharTraitAlpha('A'),
-                new CharTraitImplGroup.CharTraitVisibleAscii('C'),
-                new CharTraitImplGroup.CharTraitNumeric('N')
-        ).build();
+    private static final IWordTraitParser wordTraitParser = newWordTraitParser();
 
     private final ITraitPatternUtil traitPatternUtil;
     private final IExtract extract;
@@ -49,10 +38,40 @@ public enum WORD_TRAIT {
         this.p = traitPatternUtil.sortPattern(p);
     }
 
+    private static IWordTraitParser newWordTraitParser(){
+        return WordTraitParser.builder().
+            skipSymbols('\'').keepEscapeSymbol().
+            traits(
+                    new CharTraitImplGroup.CharTrait('\''),
+                    new CharTraitImplGroup.CharTrait('.'),
+                    new CharTraitImplGroup.CharTrait(','),
+                    new CharTraitImplGroup.CharTrait(':'),
+                    new CharTraitImplGroup.CharTrait('*'),
+                    new CharTraitImplGroup.CharTrait('['),
+                    new CharTraitImplGroup.CharTrait('_'),
+                    new CharTraitImplGroup.CharTraitAlpha('A'),
+                    new CharTraitImplGroup.CharTraitVisibleAscii('C'),
+                    new CharTraitImplGroup.CharTraitNumeric('N')
+            ).build();
+    }
+
     public static IWordTraitParser getWordTraitParser(){
         return wordTraitParser;
     }
 
+    /** For token streams such as TokenProcessor: has its own parser, so it does not share
+     *  state with tryParse() or other classifiers
+     * @return function from token to its WORD_TRAIT, null if it fits none */
+    public static Function<String, WORD_TRAIT> classifier(){
+        final IWordTraitParser parser = newWordTraitParser();
+        return new Function<String, WORD_TRAIT>() {
+            @Override
+            public WORD_TRAIT apply(String text) {
+                return fromTraitText(parser.setText(text).parse().getFoundTraits());
+            }
+        };
+    }
+
     public static boolean tryParse(IWordTraitClient client, String text) {
         String traitText = wordTraitParser.setText(text).parse().getFoundTraits();
         WORD_TRAIT traitEnum = fromTraitText(traitText);
@@ -5,6 +5,16 @@ import wordtraitutil.WORD_TRAIT;
 public interface IWordTraitParser {
     IWordTraitParser setText(String text);
 
+    /** Text is read in place, not copied. The default copies it to a String */
+    default IWordTraitParser setText(CharSequence text){
+        return this.setText(text.toString());
+    }
+
+    /** The default copies the chars to a String */
+    default IWordTraitParser setText(char[] text, int offset, int length){
+        return this.setText(new String(text, offset, length));
+    }
+
     IWordTraitParser parse();
 
     boolean foundTrait();
@@ -25,6 +35,8 @@ public interface IWordTraitParser {
 
         IBuilder skipSymbols(char[] oMap, char[] cMap);
 
+        /** Kept for compatibility, has no effect: the parser never modifies text, so escape symbols
+         *  are never removed, and an escaped char is passed over either way */
         IBuilder keepEscapeSymbol();
 
         IWordTraitParser build();
@@ -1,8 +1,11 @@
 package wordtraitutil.impl;
 
+import tokenizer.impl.ParseEvent;
+import tokenizer.impl.TokenizerEvents;
 import wordtraitutil.iface.ICharTrait;
 import wordtraitutil.iface.IWordTraitParser;
 
+import java.nio.CharBuffer;
 import java.util.Arrays;
 import java.util.Stack;
 
@@ -12,13 +15,10 @@ public class WordTraitParser implements IWordTraitParser {
     private ICharTrait[] traits;           // List of traits to look for
     private char[] oMap, cMap;              // matched open/close skip char arrays
     private Stack<Character> cSymbols;      // Closing symbol during skip
-    private boolean keepEscapeSymbol;       // obey escape symbol and leave in for later processing
     private boolean foundTrait;             // state, reset on every parse
-    private String text;
+    private CharSequence text;
 
-    private WordTraitParser(){
-        keepEscapeSymbol = false;
-    }
+    private WordTraitParser(){}
 
     /*====Private parts===============================================================================================*/
 
@@ -89,27 +89,35 @@ public class WordTraitParser implements IWordTraitParser {
 
     @Override
     public IWordTraitParser setText(String text) {
+        return this.setText((CharSequence)text);
+    }
+
+    @Override
+    public IWordTraitParser setText(CharSequence text) {
         this.text = text;
         return this;
     }
 
+    @Override
+    public IWordTraitParser setText(char[] text, int offset, int length) {
+        this.text = CharBuffer.wrap(text, offset, length);
+        return this;
+    }
+
     @Override
     public IWordTraitParser parse() {
+        ParseEvent event = TokenizerEvents.begin();
         this.clear();
 
-        int len = text.length();
+        int len = text.length(), escapes = 0, maxDepth = 0;
         boolean escaped = false;
 
         for (int i = 0; i < len; i++) {
             char curr = text.charAt(i);
 
-            if(isEscape(text.charAt(i))){
+            if(isEscape(curr)){// escape and escaped char are never checked, so text is read in place either way
                 escaped = true;
-                if(!keepEscapeSymbol){
-                    text = text.substring(0, i) + text.substring(i + 1);
-                    len--;
-                    i--;
-                }
+                escapes++;
             }
             else if(escaped){
                 escaped = false;
@@ -121,16 +129,20 @@ public class WordTraitParser implements IWordTraitParser {
                             checkTrait(curr);
                         }
                     }
-                    else if(enterSkipArea(curr)){}// ignore inner skip symbols
+                    else if(enterSkipArea(curr)){// ignore inner skip symbols
+                        maxDepth = Math.max(maxDepth, cSymbols.size());
+                    }
                 }
                 else if(enterSkipArea(curr)){
                     checkTrait(curr); // outer skip symbol can also be a watched trait
+                    maxDepth = Math.max(maxDepth, 1);
                 }
                 else {
                     checkTrait(curr);
                 }
             }
         }
+        TokenizerEvents.end(event, "WordTraitParser", len, 0, maxDepth, escapes);// finds traits, not tokens
         return this;
     }
 
@@ -213,8 +225,7 @@ public class WordTraitParser implements IWordTraitParser {
         }
 
         @Override
-        public IBuilder keepEscapeSymbol() {
-            built.keepEscapeSymbol = true;
+        public IBuilder keepEscapeSymbol() {// no-op: text is read in place, escapes are never removed
             return this;
         }
 
@@ -1,9 +1,44 @@
 package tokenizer.impl;
 
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
+import tokenizer.iface.ISymbolTable;
+import tokenizer.iface.ITokenCursor;
+import tokenizer.iface.ITokenSink;
+import tokenizer.iface.ITokenSpans;
 import tokenizer.iface.ITokenizer;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.Spliterator;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 class TokenizerTest {
@@ -22,6 +57,40 @@ class TokenizerTest {
         assertEquals("Sentence|_with|(too|many|'delims')|and|quotes", unTok);
     }
     @Test
+    void simpleTok_givenLimit_shouldUnescapeWholeRest() {
+        String text = "a b\\ c d\\ e f";
+        SimpleTok simpleTok = new SimpleTok(' ', 2);
+        assertEquals("a|b c d e f", String.join("|", simpleTok.setText(text).parse().toArray()));
+        assertEquals(Arrays.asList("a", "b c d e f"), simpleTok.tokenize(text));
+        List<String> cursor = new ArrayList<>();
+        simpleTok.cursor(text).forEachRemaining(cursor::add);
+        assertEquals(Arrays.asList("a", "b c d e f"), cursor);
+    }
+    @Test
+    void simpleTok_givenLongWhitespaceText_arraySearchMatchesInPlaceSearch() {
+        StringBuilder text = new StringBuilder();
+        for(int i = 0; i < 3000; i++){
+            text.append("field").append(i).append(i % 7 == 0? "\\ x\\\\\t" : (i % 5 == 0)? "\u00A0\n" : " ");
+        }
+        SimpleTok simpleTok = new SimpleTok().unicodeWhitespace();
+        ArrayList<String> expected = simpleTok.tokenize(new StringBuilder(text));// no array: the scalar loop
+        char[] chars = text.toString().toCharArray();
+        assertEquals(expected, simpleTok.tokenize(text.toString()));
+        assertEquals(expected, simpleTok.setText(chars, 0, chars.length).parse().toList());
+
+        char[] random = new char[4000];
+        Random r = new Random(1);
+        for(int k = 0; k < random.length; k++){
+            random[k] = (char)((r.nextInt(4) == 0)? r.nextInt(0x10000) : 'a' + r.nextInt(26));
+        }
+        for(int from = 0; from < 64; from++){
+            assertEquals(new CharSearch().find(random, from, random.length, 'q', '\\', (char)33, 0x80),
+                    CharSearch.INSTANCE.find(random, from, random.length, 'q', '\\', (char)33, 0x80));
+            assertEquals(new CharSearch().find(random, from, random.length, 'q', 'z', '\0', 0x10000),
+                    CharSearch.INSTANCE.find(random, from, random.length, 'q', 'z', '\0', 0x10000));
+        }
+    }
+    @Test
     void givenSkipArea_shouldNotTokenizeInSkipArea() {
         String text = "Sentence__with_(too_many_'delims')__and_quotes__";
         String[] tok = Tokenizer.builder().delimiters(' ', '_').skipSymbols("('").build().setText(text).parse().toArray();
@@ -126,6 +195,718 @@ class TokenizerTest {
         String unTok = String.join("|", tok);
         assertEquals("I|skip|'tokenizing \\'in here\\' but not'|out|here", unTok);
     }
+    @Test
+    void givenParseSpans_spansMatchParsedTokens() {
+        String text = "Sentence__with_(too_many_'delims')__and_quotes__";
+        ITokenizer tokenizer = Tokenizer.builder().delimiters(' ', '_').skipSymbols("('").build().setText(text);
+        String[] tok = tokenizer.parse().toArray();
+        ITokenSpans spans = tokenizer.parseSpans().toSpans();
+
+        assertEquals(tok.length, spans.size());
+        for(int i = 0; i < tok.length; i++){
+            assertEquals(tok[i], spans.get(i));
+            assertTrue(spans.contentEquals(i, tok[i]));
+            assertEquals(tok[i].hashCode(), spans.hash(i));
+        }
+        assertEquals(16, spans.start(2));
+        assertEquals(33, spans.end(2));
+        assertNull(tokenizer.toList());
+    }
+    @Test
+    void givenParseSpansWithEscape_spanKeepsEscapeSymbol() {
+        String text = "a\\_b_c";
+        ITokenSpans spans = new SimpleTok('_').setText(text).parseSpans().toSpans();
+        assertEquals(2, spans.size());
+        assertEquals("a\\_b", spans.get(0));
+        assertFalse(spans.contentEquals(0, "a_b"));
+        assertEquals('c', spans.charAt(1, 0));
+    }
+    @Test
+    void givenCharSequenceOrCharArray_shouldTokenizeSameAsString() {
+        String text = "Sentence__with_(too_many_'delims')__and_quotes__";
+        ITokenizer tokenizer = Tokenizer.builder().delimiters(' ', '_').skipSymbols("('").build();
+        String expected = String.join("|", tokenizer.setText(text).parse().toArray());
+
+        assertEquals(expected, String.join("|", tokenizer.setText(new StringBuilder(text)).parse().toArray()));
+        assertEquals(expected, String.join("|", tokenizer.setText(CharBuffer.wrap(text)).parse().toArray()));
+
+        char[] padded = ("##" + text + "##").toCharArray();
+        ITokenSpans spans = tokenizer.setText(padded, 2, text.length()).parseSpans().toSpans();
+        assertEquals("too_many_'delims'", spans.get(2));
+        assertEquals(16, spans.start(2));
+        assertEquals("_with|too", String.join("|", new SimpleTok('_').setText("a\\_with_too".toCharArray(), 1, 10).parse().toArray()));
+    }
+    @Test
+    void givenUtf8Bytes_byteTokenizerMatchesTokenizer() {
+        String text = "S\u00E4tze__mit_(zu_vielen_'Trennern')__und_\\_\u00DCml\u00E4uten__";
+        TokenizerSpec spec = Tokenizer.builder().delimiters(' ', '_').skipSymbols("('").buildSpec();
+        String expected = String.join("|", new Tokenizer(spec).setText(text).parse().toArray());
+
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        ByteSpans spans = new ByteTokenizer(spec, StandardCharsets.UTF_8).setInput(bytes).parse().toSpans();
+        String[] tok = new String[spans.size()];
+        for(int i = 0; i < tok.length; i++){
+            tok[i] = spans.decode(i);
+        }
+        assertEquals(expected, String.join("|", tok));
+        assertTrue(spans.contentEquals(1, "mit".getBytes(StandardCharsets.UTF_8)));
+
+        ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length);
+        direct.put(bytes).flip();
+        spans = new ByteTokenizer(spec, StandardCharsets.UTF_8).setInput(direct).parse().toSpans();
+        assertEquals("_\u00DCml\u00E4uten", spans.decode(spans.size() - 1));
+        assertEquals("\\_\u00DCml\u00E4uten", spans.get(spans.size() - 1));
+    }
+    @Test
+    void givenNonAsciiSymbolAndUtf8_byteTokenizerRejectsSpec() {
+        TokenizerSpec spec = Tokenizer.builder().delimiters('\u00A7').buildSpec();
+        assertThrows(IllegalStateException.class, () -> new ByteTokenizer(spec, StandardCharsets.UTF_8));
+        assertEquals("a|b", String.join("|", new Tokenizer(spec).setText("a\u00A7b").parse().toArray()));
+    }
+    @Test
+    void givenTinyChunks_streamingTokenizerMatchesTokenizer() throws IOException {
+        String text = "I skip 'tokenizing \\'in here\\' but (not_'here'_)' out_here\\ now__";
+        TokenizerSpec spec = Tokenizer.builder().delimiters(' ', '_').skipSymbols("('").tokenizeDelimiterOnce().buildSpec();
+        String expected = String.join("|", new Tokenizer(spec).setText(text).parse().toArray());
+
+        for(int chunkSize = 1; chunkSize < 9; chunkSize++){
+            StreamingTokenizer tokenizer = new StreamingTokenizer(spec, chunkSize).setInput(new StringReader(text));
+            ArrayList<String> tok = new ArrayList<>();
+            for(String next = tokenizer.next(); next != null; next = tokenizer.next()){
+                tok.add(next);
+            }
+            assertEquals(expected, String.join("|", tok), "chunk size " + chunkSize);
+            assertEquals(text.length(), tokenizer.charsRead());
+        }
+    }
+    @Test
+    void givenByteChannel_streamingTokenizerDecodesAcrossReads() throws IOException {
+        String text = "\u00FCber 'gr\u00F6\u00DFe Dinge' \u00E4rger";
+        TokenizerSpec spec = Tokenizer.builder().delimiters(' ').skipSymbols('\'').buildSpec();
+        ReadableByteChannel channel = Channels.newChannel(new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8)));
+        StreamingTokenizer tokenizer = new StreamingTokenizer(spec, 2).setInput(channel, StandardCharsets.UTF_8);
+
+        assertEquals("\u00FCber", tokenizer.next());
+        assertEquals("gr\u00F6\u00DFe Dinge", tokenizer.next());
+        assertEquals("\u00E4rger", tokenizer.next());
+        assertNull(tokenizer.next());
+    }
+    @Test
+    void givenSmallWindows_mappedFileTokenizerMatchesByteTokenizer() throws IOException {
+        String text = "gr\u00FC\u00DFe 'aus \\'der\\' Datei' (mit_(vielen) Fenstern) \\ ende";
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        TokenizerSpec spec = Tokenizer.builder().delimiters(' ').skipSymbols("('").buildSpec();
+        ByteSpans expected = new ByteTokenizer(spec, StandardCharsets.UTF_8).setInput(bytes).parse().toSpans();
+
+        Path file = Files.createTempFile("tokenizer", ".txt");
+        try(MappedFileTokenizer tokenizer = new MappedFileTokenizer(spec, StandardCharsets.UTF_8, 5)){
+            Files.write(file, bytes);
+            tokenizer.open(file);
+            int i = 0;
+            while(tokenizer.next()){
+                assertEquals(expected.start(i), tokenizer.start());
+                assertEquals(expected.end(i), tokenizer.end());
+                assertEquals(expected.decode(i), tokenizer.decode());
+                i++;
+            }
+            assertEquals(expected.size(), i);
+            assertEquals("gr\u00FC\u00DFe", tokenizer.decode(expected.start(0), expected.end(0)));
+        }
+        finally{
+            Files.delete(file);
+        }
+    }
+    @Test
+    void givenSkipAreasAcrossSegments_parallelTokenizerMatchesTokenizer() {
+        StringBuilder text = new StringBuilder();
+        for(int i = 0; i < 200; i++){
+            text.append("word").append(i).append(i % 7 == 0? " 'quoted text \\' spanning (nested 'cuts')' " : "__\\_");
+        }
+        TokenizerSpec spec = Tokenizer.builder().delimiters(' ', '_').skipSymbols("('").tokenizeDelimiterOnce().buildSpec();
+        ArrayList<String> expected = new Tokenizer(spec).setText(text).parse().toList();
+
+        for(int minSegment = 3; minSegment < 400; minSegment *= 5){
+            ParallelTokenizer tokenizer = new ParallelTokenizer(spec, new ForkJoinPool(4), minSegment);
+            assertEquals(expected, tokenizer.parse(text), "min segment " + minSegment);
+        }
+    }
+    @Test
+    void givenCutsInsideQuotes_parallelTokenizerMatchesTokenizer() {
+        StringBuilder text = new StringBuilder();
+        for(int i = 0; i < 300; i++){
+            text.append("'lorem ipsum ").append(i).append("' \"sit ").append(i % 3 == 0? "\"amet 'x' dolor\" " : "amet ");
+        }
+        for(int keep = 0; keep < 2; keep++){
+            Tokenizer.Builder builder = Tokenizer.builder().delimiters(' ').skipSymbols("'\"");
+            TokenizerSpec spec = ((keep == 0)? builder : builder.keepSkipSymbol()).buildSpec();
+            ArrayList<String> expected = new Tokenizer(spec).setText(text).parse().toList();
+
+            for(int minSegment = 2; minSegment < 400; minSegment *= 3){
+                ParallelTokenizer tokenizer = new ParallelTokenizer(spec, new ForkJoinPool(4), minSegment);
+                assertEquals(expected, tokenizer.parse(text), "min segment " + minSegment);
+            }
+        }
+    }
+    @Test
+    void tokenizer_givenDecodeEscapes_shouldDecodeInSamePass() {
+        String text = "key 'line\\none\\ttab' \\u0041\\u00e9 back\\\\ slash\\_";
+        TokenizerSpec spec = Tokenizer.builder().delimiters(' ').skipSymbols('\'').decodeEscapes().buildSpec();
+        String[] tok = new Tokenizer(spec).setText(text).parse().toArray();
+        assertArrayEquals(new String[]{"key", "line\none\ttab", "A\u00e9", "back\\", "slash_"}, tok);
+
+        ByteSpans spans = new ByteTokenizer(spec, StandardCharsets.UTF_8).setInput(text.getBytes(StandardCharsets.UTF_8)).parse().toSpans();
+        assertEquals("line\none\ttab", spans.decode(1));
+        assertEquals("A\u00e9", spans.decode(2));
+        assertThrows(IllegalStateException.class, () -> Tokenizer.builder().keepEscapeSymbol().decodeEscapes().build());
+    }
+    @Test
+    void givenSharedTokenizer_tokenizeIsThreadSafe() throws Exception {
+        ITokenizer shared = Tokenizer.builder().delimiters(' ', ',').skipSymbols("('").build();
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try{
+            ArrayList<Future<Boolean>> results = new ArrayList<>();
+            for(int t = 0; t < 8; t++){
+                final int id = t;
+                results.add(pool.submit(() -> {
+                    for(int i = 0; i < 500; i++){
+                        String text = "t" + id + ",'quoted " + i + "' (x, y) end" + i;
+                        ArrayList<String> expected = new Tokenizer(((Tokenizer)shared).spec()).setText(text).parse().toList();
+                        if(!expected.equals(shared.tokenize(text)) || shared.tokenizeSpans(text).size() != expected.size()){
+                            return false;
+                        }
+                    }
+                    return true;
+                }));
+            }
+            for(Future<Boolean> result : results){
+                assertTrue(result.get());
+            }
+        }
+        finally{
+            pool.shutdown();
+        }
+        assertNotSame(Tokenizer.initInstance(), Tokenizer.initInstance());
+        assertEquals(new SimpleTok(',').setText("a,b\\,c").parse().toList(), new SimpleTok(',').tokenize("a,b\\,c"));
+    }
+    @Test
+    void givenCursor_stopsAfterLastTokenAsked() {
+        final String line = "cmd 'first arg' (nested 'x y') last\\ one  ";
+        final int[] furthest = {-1};
+        CharSequence watched = new CharSequence() {
+            public int length() { return line.length(); }
+            public char charAt(int index) { furthest[0] = Math.max(furthest[0], index); return line.charAt(index); }
+            public CharSequence subSequence(int start, int end) { return line.subSequence(start, end); }
+            public String toString() { return line; }
+        };
+        ITokenizer tokenizer = Tokenizer.builder().delimiters(' ').skipSymbols("('").build();
+        ITokenCursor cursor = tokenizer.cursor(watched);
+        assertEquals("cmd", cursor.next());
+        assertEquals(3, furthest[0]);
+        assertEquals(1, cursor.skip(1));
+        assertEquals("nested 'x y'", cursor.next());
+        assertTrue(furthest[0] < line.indexOf("last"));
+
+        ArrayList<String> all = new ArrayList<>();
+        tokenizer.cursor(line).forEachRemaining(all::add);
+        assertEquals(tokenizer.tokenize(line), all);
+        assertEquals(0, tokenizer.cursor("   ").skip(5));
+
+        SimpleTok simple = new SimpleTok(' ', 3);
+        all.clear();
+        simple.cursor(line).forEachRemaining(all::add);
+        assertEquals(simple.tokenize(line), all);
+    }
+    @Test
+    void givenSharedSymbolTable_tokensMapToStableIds() throws Exception {
+        final ISymbolTable symbols = new SymbolTable(4);
+        final ITokenizer tokenizer = Tokenizer.builder().delimiters(' ').skipSymbols('\'').build();
+        int[] ids = tokenizer.tokenizeIds("add x 'quoted x' add y\\_z", symbols);
+        assertEquals(ids[0], ids[3]);
+        assertEquals("quoted x", symbols.symbol(ids[2]));
+        assertSame(symbols.symbol(ids[0]), symbols.symbol(tokenizer.tokenizeIds("add", symbols)[0]));
+        assertEquals(ids[4], symbols.find("y_z", 0, 3));
+        assertEquals(-1, symbols.find("nope", 0, 4));
+        assertEquals(4, symbols.size());
+
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try{
+            ArrayList<Future<int[]>> results = new ArrayList<>();
+            for(int t = 0; t < 8; t++){
+                results.add(pool.submit(() -> {
+                    StringBuilder text = new StringBuilder();
+                    for(int i = 0; i < 2000; i++){
+                        text.append("id").append(i % 700).append(' ');
+                    }
+                    return tokenizer.tokenizeIds(text, symbols);
+                }));
+            }
+            int[] first = results.get(0).get();
+            for(Future<int[]> result : results){
+                assertArrayEquals(first, result.get());
+            }
+            for(int i = 0; i < 700; i++){
+                assertEquals("id" + i, symbols.symbol(first[i]));
+            }
+        }
+        finally{
+            pool.shutdown();
+        }
+        assertEquals(704, symbols.size());
+        assertArrayEquals(new int[]{ids[4]}, new SimpleTok(',').tokenizeIds("y\\_z", symbols));
+    }
+    @Test
+    void givenIndentedLines_emitIndentAndDedentInOnePass() {
+        String text = "server\n  host 'a\n b'\n\n  ports\n\t80\\\n443\n  end\nlast";
+        TokenizerSpec spec = Tokenizer.builder().delimiters(' ').skipSymbols('\'').buildSpec();
+        IndentTokenizer tokenizer = new IndentTokenizer(spec).parse(text);
+        ArrayList<String> out = new ArrayList<>();
+        for(int i = 0; i < tokenizer.size(); i++){
+            out.add(tokenizer.get(i));
+        }
+        assertEquals(Arrays.asList("server", "NEWLINE", "INDENT", "host", "a\n b", "NEWLINE", "ports", "NEWLINE",
+                "INDENT", "80\n443", "NEWLINE", "DEDENT", "end", "NEWLINE", "DEDENT", "last", "NEWLINE"), out);
+        assertArrayEquals(new int[]{0, 2, 2, 8, 2, 0}, tokenizer.indents());
+        assertEquals(IndentTokenizer.Kind.DEDENT, tokenizer.kind(tokenizer.parse("a\n b\n  c").size() - 1));
+        assertThrows(IllegalStateException.class, () -> tokenizer.parse("a\n    b\n  c"));
+        assertThrows(IllegalStateException.class, () -> new IndentTokenizer(Tokenizer.builder().delimiters(',').buildSpec()));
+    }
+    @Test
+    void givenManyLines_batchTokenizerMatchesTokenizerPerLine() {
+        String[] lines = {"set key 'some value'", "", "  \\u0041 b\\ c", "get (key, other) x"};
+        TokenizerSpec spec = Tokenizer.builder().delimiters(' ', ',').skipSymbols("('").decodeEscapes().buildSpec();
+        BatchTokenizer batch = new BatchTokenizer(spec);
+        for(int round = 0; round < 2; round++){// second batch reuses the arrays
+            batch.parse(lines);
+            assertEquals(lines.length, batch.lines());
+            int k = 0;
+            for(int l = 0; l < lines.length; l++){
+                ArrayList<String> expected = new Tokenizer(spec).tokenize(lines[l]);
+                assertEquals(expected.size(), batch.tokenCount(l));
+                assertEquals(k, batch.firstToken(l));
+                for(String tok : expected){
+                    assertTrue(batch.contentEquals(k, tok));
+                    assertEquals(tok, batch.get(k++));
+                }
+            }
+            assertEquals(k, batch.tokens());
+        }
+        assertEquals("A", batch.get(batch.firstToken(2)));
+        assertEquals(0, batch.parse(new ArrayList<String>()).tokens());
+    }
+    @Test
+    void givenTokenSink_receivesTokensAndStructureInOrder() {
+        final StringBuilder out = new StringBuilder();
+        ITokenSink sink = new ITokenSink() {
+            @Override
+            public void token(CharSequence text, int start, int end) {
+                out.append('[').append(text, start, end).append(']');
+            }
+            @Override
+            public void enterSkip(char symbol, int offset) {
+                out.append('<').append(offset);
+            }
+            @Override
+            public void leaveSkip(char symbol, int offset) {
+                out.append(offset).append('>');
+            }
+            @Override
+            public void delimiter(char symbol, int offset) {
+                out.append(symbol);
+            }
+            @Override
+            public void delimiter(CharSequence text, int start, int end) {
+                out.append('{').append(text, start, end).append('}');
+            }
+        };
+        String text = "a,b\\,c (x 'y) z')d";
+        ITokenizer tokenizer = Tokenizer.builder().delimiters(',', ' ').skipSymbols("('").build();
+        tokenizer.tokenize(text, sink);
+        assertEquals("[a],[b,c] <7[x 'y) z']16>[d]", out.toString());
+
+        out.setLength(0);
+        new SimpleTok(',', 2).tokenize(text, sink);
+        assertEquals("[a],[b,c (x 'y) z')d]", out.toString());
+
+        out.setLength(0);
+        Tokenizer.builder().delimiters(",", "::").build().tokenize("a,b::c", sink);
+        assertEquals("[a],[b]{::}[c]", out.toString());
+
+        out.setLength(0);
+        String emoji = new String(Character.toChars(0x1F600));
+        new SimpleTok().setCodePointDelimiter(0x1F600).tokenize("x" + emoji + "y", sink);
+        assertEquals("[x]{" + emoji + "}[y]", out.toString());
+    }
+    @Test
+    void givenRecording_parseEventsReportCounts() throws Exception {
+        Path file = Files.createTempFile("tokenizer", ".jfr");
+        try(Recording recording = new Recording()){
+            recording.enable("tokenizer.Parse").withThreshold(Duration.ZERO);
+            recording.enable("tokenizer.Stats").with("period", "endChunk");
+            recording.start();
+            Tokenizer.builder().delimiters(' ').skipSymbols("('").build().setText("a ('b (c)' \\d) e\\ f").parse();
+            new SimpleTok('|').setText("x|y").parseSpans();
+            new SimpleTok('|').tokenize("x|y|z");
+            recording.stop();
+            recording.dump(file);
+        }
+        try{
+            List<RecordedEvent> events = new ArrayList<>();
+            List<RecordedEvent> stats = new ArrayList<>();
+            for(RecordedEvent event : RecordingFile.readAllEvents(file)){
+                (event.getEventType().getName().equals("tokenizer.Stats")? stats : events).add(event);
+            }
+            assertEquals(3, events.size());
+            RecordedEvent parse = events.get(0);
+            assertEquals("Tokenizer", parse.getString("engine"));
+            assertEquals(3, parse.getInt("tokens"));
+            assertEquals(3, parse.getInt("maxSkipDepth"));
+            assertEquals(2, parse.getInt("escapes"));
+            assertEquals("SimpleTok", events.get(1).getString("engine"));
+            assertEquals(3, events.get(2).getInt("tokens"));
+            assertFalse(stats.isEmpty());
+            assertTrue(stats.get(stats.size() - 1).getLong("parses") >= 3);
+        }
+        finally{
+            Files.delete(file);
+        }
+    }
+    @Test
+    void givenChunkedPublisher_tokenProcessorHonorsDemand() throws Exception {
+        TokenizerSpec spec = Tokenizer.builder().delimiters(' ').skipSymbols('\'').buildSpec();
+        String[] chunks = {"set ke", "y 'a b", "' 12", "3 \\", " x"};
+        final ArrayList<String> received = new ArrayList<>();
+        final CountDownLatch done = new CountDownLatch(1);
+        TokenProcessor<String> processor = TokenProcessor.of(spec, false);
+        processor.subscribe(new Flow.Subscriber<String>() {
+            private Flow.Subscription subscription;
+            @Override
+            public void onSubscribe(Flow.Subscription subscription) {
+                this.subscription = subscription;
+                subscription.request(1);
+            }
+            @Override
+            public void onNext(String item) {
+                received.add(item);
+                subscription.request(1);
+            }
+            @Override
+            public void onError(Throwable throwable) {
+                received.add("error " + throwable);
+                done.countDown();
+            }
+            @Override
+            public void onComplete() {
+                done.countDown();
+            }
+        });
+        try(SubmissionPublisher<CharSequence> publisher = new SubmissionPublisher<>()){
+            publisher.subscribe(processor);
+            for(String chunk : chunks){
+                publisher.submit(chunk);
+            }
+        }
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        assertEquals(new Tokenizer(spec).tokenize(String.join("", chunks)), received);
+    }
+    @Test
+    void givenMultiCharDelimiterAcrossItems_tokenProcessorSplitsAndReportsMapperErrors() throws Exception {
+        TokenizerSpec spec = Tokenizer.builder().delimiters(" ", "::").tokenizeDelimiter().buildSpec();
+        String[] chunks = {"abc:", ":def ghi:", ":jk boom x"};
+        TokenProcessor<String> plain = TokenProcessor.of(spec, false);
+        TokenProcessor<String> failing = new TokenProcessor<>(spec, false, tok -> {
+            if(tok.equals("boom")){
+                throw new IllegalStateException(tok);
+            }
+            return tok;
+        });
+        for(TokenProcessor<String> processor : Arrays.asList(plain, failing)){
+            final ArrayList<String> received = new ArrayList<>();
+            final CountDownLatch done = new CountDownLatch(1);
+            processor.subscribe(new Flow.Subscriber<String>() {
+                @Override
+                public void onSubscribe(Flow.Subscription subscription) {
+                    subscription.request(Long.MAX_VALUE);
+                }
+                @Override
+                public void onNext(String item) {
+                    received.add(item);
+                }
+                @Override
+                public void onError(Throwable throwable) {
+                    received.add("error " + throwable.getMessage());
+                    done.countDown();
+                }
+                @Override
+                public void onComplete() {
+                    done.countDown();
+                }
+            });
+            try(SubmissionPublisher<CharSequence> publisher = new SubmissionPublisher<>()){
+                publisher.subscribe(processor);
+                for(String chunk : chunks){
+                    publisher.submit(chunk);
+                }
+            }
+            assertTrue(done.await(10, TimeUnit.SECONDS));
+            List<String> expected = new ArrayList<>(new Tokenizer(spec).tokenize(String.join("", chunks)));
+            if(processor == failing){
+                expected = new ArrayList<>(expected.subList(0, expected.indexOf("boom")));
+                expected.add("error boom");
+            }
+            assertEquals(expected, received);
+        }
+    }
+    @Test
+    void givenParallelStream_tokensMatchSequentialParse() {
+        StringBuilder text = new StringBuilder();
+        for(int i = 0; i < 20000; i++){
+            text.append("w").append(i % 97).append(i % 11 == 0? " 'quoted, (text\\' x)' " : ",\\, ");
+        }
+        ITokenizer[] tokenizers = {
+                Tokenizer.builder().delimiters(' ', ',').skipSymbols("('").build(),
+                Tokenizer.builder().delimiters(' ', ',').tokenizeDelimiterOnce().decodeEscapes().build(),
+                new SimpleTok(',')
+        };
+        for(ITokenizer tokenizer : tokenizers){
+            ArrayList<String> expected = tokenizer.tokenize(text);
+            assertEquals(expected, tokenizer.stream(text).parallel().collect(Collectors.toList()));
+            assertEquals(expected.subList(0, 3), tokenizer.stream(text).limit(3).collect(Collectors.toList()));
+            ISymbolTable symbols = new SymbolTable();
+            assertArrayEquals(tokenizer.tokenizeIds(text, symbols), tokenizer.idStream(text, symbols).parallel().toArray());
+        }
+    }
+    @Test
+    void givenSkipSymbols_scannedPrefixSplitsAgain() {
+        StringBuilder text = new StringBuilder();
+        for(int i = 0; i < 40000; i++){
+            text.append("w").append(i % 97).append(i % 9 == 0? " 'a b' " : " ");
+        }
+        TokenizerSpec spec = Tokenizer.builder().delimiters(' ').skipSymbols('\'').buildSpec();
+        TokenSpliterator.Strings suffix = new TokenSpliterator.Strings(spec, text);
+        Spliterator<String> prefix = suffix.trySplit();
+        Spliterator<String> first = prefix.trySplit();
+        assertNotNull(first);
+        long total = new Tokenizer(spec).tokenize(text).size(), firstSize = first.estimateSize();
+        assertTrue(firstSize > total / 5 && firstSize < total / 3, firstSize + " of " + total);
+
+        ArrayList<String> tokens = new ArrayList<>();
+        first.forEachRemaining(tokens::add);
+        prefix.forEachRemaining(tokens::add);
+        suffix.forEachRemaining(tokens::add);
+        assertEquals(new Tokenizer(spec).tokenize(text), tokens);
+    }
+    @Test
+    void givenDirectory_eachFileTokenizedInOrder() throws IOException, InterruptedException {
+        Path dir = Files.createTempDirectory("tokenizer");
+        try{
+            Files.createDirectories(dir.resolve("sub"));
+            List<Path> files = new ArrayList<>();
+            for(int i = 0; i < 20; i++){
+                Path file = dir.resolve((i % 2 == 0? "" : "sub/") + "f" + (char)('a' + i) + ".txt");
+                Files.writeString(file, "file " + i + " 'has some' words");
+                files.add(file);
+            }
+            files.sort(null);
+            TokenizerSpec spec = Tokenizer.builder().delimiters(' ').skipSymbols("'").buildSpec();
+            List<Path> seen = new ArrayList<>();
+            List<List<String>> received = new ArrayList<>();
+            DirectoryTokenizer.Report report = new DirectoryTokenizer(spec, StandardCharsets.UTF_8, 4)
+                    .run(dir, true, (file, tokens) -> {
+                        seen.add(file);
+                        received.add(tokens);
+                    });
+            assertEquals(files, seen);
+            for(List<String> tokens : received){
+                assertEquals(4, tokens.size());
+                assertEquals("has some", tokens.get(2));
+            }
+            assertEquals(20, report.files());
+            assertTrue(report.failed().isEmpty());
+            long bytes = 0;
+            for(Path file : files){
+                bytes += Files.size(file);
+            }
+            assertEquals(bytes, report.bytes());
+            assertTrue(report.filesPerSecond() > 0);
+
+            List<Path> unordered = new ArrayList<>();
+            new DirectoryTokenizer(spec, StandardCharsets.UTF_8, 3).run(dir, false, (file, tokens) -> unordered.add(file));
+            unordered.sort(null);
+            assertEquals(files, unordered);
+
+            for(boolean ordered : new boolean[]{true, false}){
+                List<Path> delivered = new ArrayList<>();
+                assertThrows(IllegalStateException.class, () -> new DirectoryTokenizer(spec, StandardCharsets.UTF_8, 2)
+                        .run(dir, ordered, (file, tokens) -> {
+                            delivered.add(file);
+                            throw new IllegalStateException("receiver failed");
+                        }));
+                assertEquals(1, delivered.size());
+            }
+            assertThrows(OutOfMemoryError.class, () -> new DirectoryTokenizer(spec, StandardCharsets.UTF_8, 2)
+                    .run(dir, true, (file, tokens) -> {
+                        throw new OutOfMemoryError("receiver");
+                    }));
+        }
+        finally{
+            try(Stream<Path> walk = Files.walk(dir)){
+                walk.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+            }
+        }
+    }
+    @Test
+    void givenEdits_incrementalTokensMatchFullParse() {
+        TokenizerSpec spec = Tokenizer.builder().delimiters(' ', ',').skipSymbols("('").buildSpec();
+        StringBuilder text = new StringBuilder();
+        for(int i = 0; i < 1000; i++){
+            text.append("word").append(i).append(i % 7 == 0? " '(quoted) x', " : " ");
+        }
+        IncrementalTokenizer tokens = new IncrementalTokenizer(spec).setText(text);
+        int[][] edits = {{50, 0}, {3000, 2}, {7, 1}, {text.length() - 1, 1}, {120, 0}, {0, 0}};
+        String[] inserted = {"zz", " ", "", "\\", "'(", "x"};
+        for(int e = 0; e < edits.length; e++){
+            int offset = edits[e][0], removed = edits[e][1];
+            text.replace(offset, offset + removed, inserted[e]);
+            tokens.edit(offset, removed, inserted[e]);
+            assertEquals(text.toString(), tokens.text().toString());
+            List<String> expected = new Tokenizer(spec).tokenize(text);
+            assertEquals(expected.size(), tokens.size());
+            for(int i = 0; i < tokens.size(); i++){
+                assertEquals(expected.get(i), tokens.decode(i));
+            }
+        }
+        tokens.edit(10, 1, "q");
+        assertTrue(tokens.rescanned() < 100);
+        assertTrue(tokens.lastChanged() - tokens.firstChanged() <= 2);
+    }
+    @Test
+    void givenDelimitedRecords_fieldsUnquotedAcrossChunks() throws IOException {
+        String input = "id,name,note\r\n"
+                + "1,\"Smith, John\",\"said \"\"hi\"\"\"\n"
+                + "\n"
+                + "-42,O\\,Brien,\"two\nlines\"\r"
+                + "9000000000,,\"\"";
+        List<List<String>> expected = Arrays.asList(
+                Arrays.asList("id", "name", "note"),
+                Arrays.asList("1", "Smith, John", "said \"hi\""),
+                Arrays.asList("-42", "O,Brien", "two\nlines"),
+                Arrays.asList("9000000000", "", ""));
+        for(int chunk : new int[]{3, 8192}){
+            RecordReader records = new RecordReader(',', '"', chunk).setInput(new StringReader(input));
+            List<List<String>> rows = new ArrayList<>();
+            while(records.next()){
+                List<String> row = new ArrayList<>();
+                for(int i = 0; i < records.size(); i++){
+                    row.add(records.get(i));
+                }
+                rows.add(row);
+                if(records.records() == 3){
+                    assertEquals(-42, records.intValue(0));
+                    assertTrue(records.contentEquals(1, "O,Brien"));
+                }
+            }
+            assertEquals(expected, rows);
+            assertEquals(9000000000L, Long.parseLong(rows.get(3).get(0)));
+        }
+        RecordReader records = new RecordReader(',', '"').setInput(new StringReader("a,b\na,c\n"));
+        ISymbolTable symbols = new SymbolTable();
+        assertTrue(records.next());
+        int a = records.id(0, symbols);
+        assertTrue(records.next());
+        assertEquals(a, records.id(0, symbols));
+        assertThrows(IllegalStateException.class, () -> new RecordReader(',', '"').setInput(new StringReader("\"open")).next());
+    }
+    @Test
+    void givenMultiCharDelimiters_splitInOnePass() {
+        ITokenizer tokenizer = Tokenizer.builder().delimiters(" ", "::", "->").skipSymbols("'").build();
+        assertEquals(Arrays.asList("std", "vector", "a", "b", "c", "x::y", "d:e", "f->g"),
+                tokenizer.tokenize("std::vector a->b ->c 'x::y' d:e f-\\>g"));
+        ITokenizer withDelimiters = Tokenizer.builder().delimiters(",", "\r\n", "::").tokenizeDelimiterOnce().build();
+        assertEquals(Arrays.asList("a", "::", "b", ",", "c", "\r\n", "d"),
+                withDelimiters.tokenize("a::::b,\r\nc\r\nd"));
+        ITokenSpans spans = withDelimiters.tokenizeSpans("a::b");
+        assertEquals(1, spans.start(1));
+        assertEquals(3, spans.end(1));
+        assertThrows(IllegalStateException.class, () -> Tokenizer.builder().delimiters(" ", "\r\n").build());
+    }
+    @Test
+    void givenMultiCharDelimitersAcrossChunks_streamingTokenizerMatchesTokenizer() throws IOException {
+        String text = "abc::def ghi::jk";
+        for(TokenizerSpec spec : new TokenizerSpec[]{Tokenizer.builder().delimiters(" ", "::").buildSpec(),
+                Tokenizer.builder().delimiters(" ", "::").tokenizeDelimiter().buildSpec()}){
+            List<String> expected = new Tokenizer(spec).tokenize(text);
+            for(int chunkSize = 1; chunkSize < 9; chunkSize++){
+                StreamingTokenizer tokenizer = new StreamingTokenizer(spec, chunkSize).setInput(new StringReader(text));
+                List<String> tok = new ArrayList<>();
+                for(String next = tokenizer.next(); next != null; next = tokenizer.next()){
+                    tok.add(next);
+                }
+                assertEquals(expected, tok, "chunk size " + chunkSize);
+            }
+        }
+    }
+    @Test
+    void givenUnicodeSpacesAndCodePoints_delimitedWithoutNormalizing() {
+        String text = "a\u00A0b\u2028c\u3000d 'e\u3000f' g\u0085h\u00E9";
+        ITokenizer tokenizer = Tokenizer.builder().delimiters(' ').skipSymbols("'").unicodeWhitespace().build();
+        assertEquals(Arrays.asList("a", "b", "c", "d", "e\u3000f", "g", "h\u00E9"), tokenizer.tokenize(text));
+        assertEquals(Arrays.asList("a\u00A0b\u2028c\u3000d", "'e\u3000f'", "g\u0085h\u00E9"),
+                Tokenizer.builder().delimiters(' ').build().tokenize(text));
+        SimpleTok simpleTok = new SimpleTok().unicodeWhitespace();
+        assertEquals(Arrays.asList("a", "b", "c", "d", "'e", "f'", "g", "h\u00E9"), simpleTok.tokenize(text));
+
+        String emoji = new String(Character.toChars(0x1F600));
+        String other = new String(Character.toChars(0x1F601));
+        String mixed = "x" + emoji + "y" + other + "z" + emoji + "\\" + emoji + "w";
+        List<String> expected = Arrays.asList("x", "y" + other + "z", emoji + "w");
+        assertEquals(expected, Tokenizer.builder().delimiters(emoji).build().tokenize(mixed));
+        assertEquals(expected, new SimpleTok().setCodePointDelimiter(0x1F600).tokenize(mixed));
+        assertEquals(expected, new SimpleTok().setCodePointDelimiter(0x1F600).tokenize(new StringBuilder(mixed)));
+        assertThrows(IllegalStateException.class, () -> Tokenizer.builder().delimiters(emoji.charAt(0)).build());
+        TokenizerSpec spec = Tokenizer.builder().delimiters(' ').unicodeWhitespace().buildSpec();
+        assertThrows(IllegalStateException.class, () -> new ByteTokenizer(spec, StandardCharsets.UTF_8));
+    }
+    @Test
+    void givenRepeatedInputs_cacheHitsAndEvictsOldest() throws Exception {
+        ITokenizer tokenizer = Tokenizer.builder().delimiters(' ').skipSymbols("'").build();
+        TokenCache cache = new TokenCache(tokenizer, 400, 1);
+        List<String> first = cache.tokenize("set key 'some value'");
+        assertEquals(Arrays.asList("set", "key", "some value"), first);
+        assertSame(first, cache.tokenize(new StringBuilder("set key 'some value'")));
+        assertThrows(UnsupportedOperationException.class, () -> first.add("x"));
+        assertEquals(1, cache.hits());
+        assertEquals(1, cache.misses());
+        for(int i = 0; i < 10; i++){
+            cache.tokenize("get key" + i);
+        }
+        assertTrue(cache.evictions() > 0);
+        assertTrue(cache.weight() <= 400);
+        assertEquals(Arrays.asList("get", "key9"), cache.tokenize("get key9"));
+        assertEquals(2, cache.hits());
+        cache.tokenize("set key 'some value'");
+        assertEquals(2, cache.hits());
+
+        TokenCache shared = new TokenCache(tokenizer, 1 << 16);
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        List<Future<Boolean>> results = new ArrayList<>();
+        for(int t = 0; t < 4; t++){
+            results.add(pool.submit(() -> {
+                for(int i = 0; i < 2000; i++){
+                    String text = "cmd" + (i % 50) + " 'arg " + (i % 7) + "'";
+                    if(!shared.tokenize(text).equals(tokenizer.tokenize(text))){
+                        return false;
+                    }
+                }
+                return true;
+            }));
+        }
+        for(Future<Boolean> result : results){
+            assertTrue(result.get());
+        }
+        pool.shutdown();
+        assertEquals(8000, shared.hits() + shared.misses());
+        assertTrue(shared.hitRate() > 0.9);
+    }
     /*=====GTree ParseTree uses=======================================================================================*/
 
     @Test
@@ -2,12 +2,20 @@ package wordtraitutil.impl;
 
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
+import tokenizer.impl.TokenProcessor;
+import tokenizer.impl.Tokenizer;
+import tokenizer.impl.TokenizerSpec;
 import wordtraitutil.WORD_TRAIT;
 import wordtraitutil.iface.ITraitPatternUtil;
 import wordtraitutil.iface.IWordTraitClient;
 import wordtraitutil.iface.IWordTraitParser;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Flow;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.TimeUnit;
 
 import static wordtraitutil.impl.CharTraitImplGroup.*;
 import static wordtraitutil.WORD_TRAIT.*;
@@ -100,6 +108,16 @@ class WordTraitUtilTest {
         Assertions.assertEquals(expected, actual);
     }
 
+    @Test
+    void givenCharSequenceOrCharArray_returnSameTraitString(){
+        IWordTraitParser wordTrait = getWordTraitUtil();
+        String text = "xx'Larry','Moe'xx";
+        char[] chars = text.toCharArray();
+
+        Assertions.assertEquals("',C", wordTrait.setText(new StringBuilder(text.substring(2, 15))).parse().getFoundTraits());
+        Assertions.assertEquals("',C", wordTrait.setText(chars, 2, 13).parse().getFoundTraits());
+    }
+
     @Test
     void givenOddballInput_returnCorrect(){
         IWordTraitParser wordTrait = getWordTraitUtil();
@@ -386,4 +404,48 @@ class WordTraitUtilTest {
                     "|wordTraitEnum=" + wordTraitEnum;
         }
     }
-}
\ No newline at end of file
+
+    @Test
+    void givenLinesThroughProcessor_classifyTokensOnDemand() throws Exception {
+        TokenizerSpec spec = Tokenizer.builder().delimiters(' ').skipSymbols('\'').keepSkipSymbol().buildSpec();
+        TokenProcessor<WORD_TRAIT> processor = new TokenProcessor<>(spec, true, WORD_TRAIT.classifier());
+        final ArrayList<WORD_TRAIT> received = new ArrayList<>();
+        final long[] outstanding = {0};
+        final CountDownLatch done = new CountDownLatch(1);
+        processor.subscribe(new Flow.Subscriber<WORD_TRAIT>() {
+            private Flow.Subscription subscription;
+            @Override
+            public void onSubscribe(Flow.Subscription subscription) {
+                this.subscription = subscription;
+                outstanding[0] = 2;
+                subscription.request(2);
+            }
+            @Override
+            public void onNext(WORD_TRAIT item) {
+                received.add(item);
+                if(--outstanding[0] < 0){
+                    received.add(null);// more than requested
+                }
+                if(outstanding[0] == 0){
+                    outstanding[0] = 2;
+                    subscription.request(2);
+                }
+            }
+            @Override
+            public void onError(Throwable throwable) {
+                done.countDown();
+            }
+            @Override
+            public void onComplete() {
+                done.countDown();
+            }
+        });
+        try(SubmissionPublisher<CharSequence> publisher = new SubmissionPublisher<>()){
+            publisher.subscribe(processor);
+            publisher.submit("12 abc");
+            publisher.submit("1,2 'x'");
+        }
+        Assertions.assertTrue(done.await(10, TimeUnit.SECONDS));
+        Assertions.assertEquals(Arrays.asList(NUM_PAR, ID_PAR, NUM_LIST, STR_PAR), received);
+    }
+}
@@ -0,0 +1,43 @@
+package tokenizer.impl;
+
+import jdk.incubator.vector.ShortVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/** CharSearch with the Vector API: 16 chars per step with AVX2 or AVX-512, 8 with SSE or NEON.
+ *  Loaded by CharSearch; the tail shorter than one vector is left to the scalar loop */
+final class VectorCharSearch extends CharSearch {
+    // no wider than 16: fields in records are short, so 32 lanes mostly read past the next delimiter
+    private static final VectorSpecies<Short> SPECIES = (ShortVector.SPECIES_PREFERRED.length() > 16)?
+            ShortVector.SPECIES_256 : ShortVector.SPECIES_PREFERRED;
+
+    VectorCharSearch(){
+        if(SPECIES.length() < 8){
+            throw new UnsupportedOperationException(SPECIES + " is no faster than the scalar search");
+        }
+    }
+
+    @Override
+    int lanes() {
+        return SPECIES.length();
+    }
+
+    @Override
+    int find(char[] text, int from, int to, char a, char b, char below, int above) {
+        boolean high = above <= Character.MAX_VALUE;
+        for(int step = SPECIES.length(); from + step <= to; from += step){
+            ShortVector chars = ShortVector.fromCharArray(SPECIES, text, from);
+            VectorMask<Short> hits = chars.eq((short)a)
+                    .or(chars.eq((short)b))
+                    .or(chars.compare(VectorOperators.UNSIGNED_LT, (short)below));// chars are unsigned, shorts are not
+            if(high){
+                hits = hits.or(chars.compare(VectorOperators.UNSIGNED_GE, (short)above));
+            }
+            if(hits.anyTrue()){
+                return from + hits.firstTrue();
+            }
+        }
+        return super.find(text, from, to, a, b, below, above);
+    }
+}